@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating the country list from the compiled table, and the dial code trie over it. This is what
+ * the first component of a process waits for.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class CountryTableBenchmark {
+
+    private List<Country> mCountries;
+
+    @Setup
+    public void setUp() {
+        mCountries = CountryRegistry.load();
+    }
+
+    @Benchmark
+    public List<Country> loadCountries() {
+        return CountryRegistry.load();
+    }
+
+    @Benchmark
+    public DialCodeTrie buildDialCodeTrie() {
+        return new DialCodeTrie(mCountries, CountryTable.PREFIXES);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Country detection from partial input, as {@link CountryDetector} runs it after every keystroke:
+ * every invocation resolves all keystrokes of one number of the corpus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class DetectionBenchmark {
+
+    private DialCodeTrie mTrie;
+
+    /**
+     * "+", "+4", "+44", ... of every number.
+     */
+    private String[][] mInternational;
+
+    /**
+     * National digits typed under the default country of the dial code, e.g. Canadian numbers
+     * typed while +1 is selected.
+     */
+    private String[][] mNational;
+    private Country[] mSelected;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        CountryRegistry registry = CountryRegistry.getInstance();
+        mTrie = registry.getDialCodeTrie();
+
+        PhoneNumberCorpus corpus = new PhoneNumberCorpus();
+        int size = corpus.size();
+        mInternational = new String[size][];
+        mNational = new String[size][];
+        mSelected = new Country[size];
+        for (int i = 0; i < size; i++) {
+            String e164 = corpus.e164[i];
+            String national = corpus.nationalDigits[i];
+            int code = Integer.parseInt(e164.substring(1, e164.length() - national.length()));
+            mInternational[i] = PhoneNumberCorpus.keystrokes(e164, 1);
+            mNational[i] = PhoneNumberCorpus.keystrokes(national, 1);
+            mSelected[i] = registry.getDefaultCountryForCode(code);
+        }
+    }
+
+    private int next() {
+        int i = mNext;
+        mNext = i + 1 == mInternational.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public void detectInternational(Blackhole bh) {
+        for (String text : mInternational[next()]) {
+            bh.consume(mTrie.find(text));
+        }
+    }
+
+    @Benchmark
+    public void detectNational(Blackhole bh) {
+        int i = next();
+        Country selected = mSelected[i];
+        if (selected == null) {
+            return;
+        }
+        for (String text : mNational[i]) {
+            bh.consume(mTrie.findWithin(selected, text));
+        }
+    }
+}
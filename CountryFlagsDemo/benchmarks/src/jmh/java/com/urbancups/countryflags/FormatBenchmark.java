@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.AsYouTypeFormatter;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting while typing: every invocation types one number of the corpus digit by digit into a
+ * formatter of its region, formatting the whole field after each keystroke like the text watcher
+ * does. The replay benchmark is the approach the watcher used before
+ * {@link IncrementalAsYouTypeFormatter}, kept as the baseline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class FormatBenchmark {
+
+    private String[][] mKeystrokes;
+    private IncrementalAsYouTypeFormatter[] mIncremental;
+    private AsYouTypeFormatter[] mFormatters;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        PhoneNumberCorpus corpus = new PhoneNumberCorpus();
+        int size = corpus.size();
+        mKeystrokes = new String[size][];
+        mIncremental = new IncrementalAsYouTypeFormatter[size];
+        mFormatters = new AsYouTypeFormatter[size];
+
+        // one formatter per region, like one component per screen
+        HashMap<String, IncrementalAsYouTypeFormatter> incremental = new HashMap<>();
+        HashMap<String, AsYouTypeFormatter> formatters = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String region = corpus.regions[i];
+            if (!incremental.containsKey(region)) {
+                incremental.put(region, new IncrementalAsYouTypeFormatter(util.getAsYouTypeFormatter(region)));
+                formatters.put(region, util.getAsYouTypeFormatter(region));
+            }
+            mKeystrokes[i] = PhoneNumberCorpus.keystrokes(corpus.national[i], 1);
+            mIncremental[i] = incremental.get(region);
+            mFormatters[i] = formatters.get(region);
+        }
+    }
+
+    private int next() {
+        int i = mNext;
+        mNext = i + 1 == mKeystrokes.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public void typeNumberIncremental(Blackhole bh) {
+        int i = next();
+        IncrementalAsYouTypeFormatter formatter = mIncremental[i];
+        String[] keystrokes = mKeystrokes[i];
+        for (String text : keystrokes) {
+            bh.consume(formatter.format(text));
+        }
+        formatter.clear();
+    }
+
+    @Benchmark
+    public void typeNumberReplay(Blackhole bh) {
+        int i = next();
+        AsYouTypeFormatter formatter = mFormatters[i];
+        String[] keystrokes = mKeystrokes[i];
+        for (String text : keystrokes) {
+            formatter.clear();
+            String formatted = "";
+            for (int j = 0; j < text.length(); j++) {
+                char c = text.charAt(j);
+                if (IncrementalAsYouTypeFormatter.isNonSeparator(c)) {
+                    formatted = formatter.inputDigit(c);
+                }
+            }
+            bh.consume(formatted);
+        }
+        formatter.clear();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Phone numbers of every region known to libphonenumber, taken from its example numbers for the
+ * number types people actually type (mobile, fixed line, toll free). The corpus is the same on
+ * every run, so results are comparable.
+ */
+final class PhoneNumberCorpus {
+
+    private static final PhoneNumberUtil.PhoneNumberType[] TYPES = {
+            PhoneNumberUtil.PhoneNumberType.MOBILE,
+            PhoneNumberUtil.PhoneNumberType.FIXED_LINE,
+            PhoneNumberUtil.PhoneNumberType.TOLL_FREE,
+    };
+
+    /**
+     * Region of every number.
+     */
+    final String[] regions;
+
+    /**
+     * Numbers in E.164, e.g. "+447400123456".
+     */
+    final String[] e164;
+
+    /**
+     * Numbers as written nationally, e.g. "07400 123456".
+     */
+    final String[] national;
+
+    /**
+     * National significant numbers, i.e. the digits typed after the country code, e.g. "7400123456".
+     */
+    final String[] nationalDigits;
+
+    PhoneNumberCorpus() {
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        List<String> regions = new ArrayList<>();
+        List<String> e164 = new ArrayList<>();
+        List<String> national = new ArrayList<>();
+        List<String> nationalDigits = new ArrayList<>();
+
+        for (String region : new TreeSet<>(util.getSupportedRegions())) {
+            for (PhoneNumberUtil.PhoneNumberType type : TYPES) {
+                Phonenumber.PhoneNumber number = util.getExampleNumberForType(region, type);
+                if (number == null) {
+                    continue;
+                }
+                regions.add(region);
+                e164.add(util.format(number, PhoneNumberUtil.PhoneNumberFormat.E164));
+                national.add(util.format(number, PhoneNumberUtil.PhoneNumberFormat.NATIONAL));
+                nationalDigits.add(util.getNationalSignificantNumber(number));
+            }
+        }
+        this.regions = regions.toArray(new String[regions.size()]);
+        this.e164 = e164.toArray(new String[e164.size()]);
+        this.national = national.toArray(new String[national.size()]);
+        this.nationalDigits = nationalDigits.toArray(new String[nationalDigits.size()]);
+    }
+
+    int size() {
+        return regions.length;
+    }
+
+    /**
+     * @return the text of the phone field after every keystroke typing <code>s</code>, i.e. all
+     * prefixes of <code>s</code> from length <code>from</code> on
+     */
+    static String[] keystrokes(String s, int from) {
+        String[] keystrokes = new String[Math.max(0, s.length() - from + 1)];
+        for (int i = 0; i < keystrokes.length; i++) {
+            keystrokes[i] = s.substring(0, from + i);
+        }
+        return keystrokes;
+    }
+}
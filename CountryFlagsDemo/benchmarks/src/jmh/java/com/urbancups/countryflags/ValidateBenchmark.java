@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a typed number against its region, as {@link PhoneNumbers#validate} does for the
+ * component, one number of the corpus per invocation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ValidateBenchmark {
+
+    private final PhoneNumberUtil mPhoneNumberUtil = PhoneNumberUtil.getInstance();
+    private PhoneNumberCorpus mCorpus;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws NumberParseException {
+        mCorpus = new PhoneNumberCorpus();
+        // load the metadata of every region before measuring
+        for (int i = 0; i < mCorpus.size(); i++) {
+            mPhoneNumberUtil.parse(mCorpus.national[i], mCorpus.regions[i]);
+        }
+    }
+
+    private int next() {
+        int i = mNext;
+        mNext = i + 1 == mCorpus.size() ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Phonenumber.PhoneNumber parse() throws NumberParseException {
+        int i = next();
+        return mPhoneNumberUtil.parse(mCorpus.national[i], mCorpus.regions[i]);
+    }
+
+    @Benchmark
+    public boolean parseAndValidate() throws NumberParseException {
+        int i = next();
+        return mPhoneNumberUtil.isValidNumber(mPhoneNumberUtil.parse(mCorpus.national[i], mCorpus.regions[i]));
+    }
+}
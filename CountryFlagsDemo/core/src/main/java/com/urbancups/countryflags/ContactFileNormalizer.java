@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Normalizes the phone numbers of a contact file (CSV or vCard) of any size into a CSV file with
+ * the columns <code>number,e164,country,error</code>, one row per number, in file order.
+ * <p/>
+ * The input is read in chunks of {@link #CHUNK_SIZE} bytes on a reader thread, which hands the
+ * numbers over in batches of {@link #BATCH_SIZE}. The calling thread normalizes every batch with a
+ * {@link PhoneNumberNormalizer} and writes it out. At most {@link #QUEUED_BATCHES} batches wait
+ * between the two: when the writing side falls behind, the reader blocks until it catches up, so
+ * memory stays the same whatever the file size.
+ * <p/>
+ * Files are read and written as UTF-8.
+ */
+public final class ContactFileNormalizer {
+
+    public enum Format {
+        CSV,
+        VCARD,
+    }
+
+    public interface OnProgressListener {
+
+        /**
+         * Called on the normalizing thread after every batch written.
+         */
+        void onProgress(Counters counters);
+
+    }
+
+    /**
+     * Throughput of a run so far. Safe to read from any thread.
+     */
+    public static final class Counters {
+
+        private final long mStartNanos = System.nanoTime();
+        private final AtomicLong mBytesRead = new AtomicLong();
+        private final AtomicLong mNumbersRead = new AtomicLong();
+        private final AtomicLong mNumbersWritten = new AtomicLong();
+        private final AtomicLong mFailures = new AtomicLong();
+        private final AtomicLong mReaderBlockedNanos = new AtomicLong();
+
+        public long getBytesRead() {
+            return mBytesRead.get();
+        }
+
+        public long getNumbersRead() {
+            return mNumbersRead.get();
+        }
+
+        public long getNumbersWritten() {
+            return mNumbersWritten.get();
+        }
+
+        /**
+         * @return the number of numbers written that couldn't be parsed
+         */
+        public long getFailures() {
+            return mFailures.get();
+        }
+
+        /**
+         * @return how long the reader waited for the normalizing side, a sign that normalizing is
+         * the bottleneck
+         */
+        public long getReaderBlockedMillis() {
+            return mReaderBlockedNanos.get() / 1000000;
+        }
+
+        public long getElapsedMillis() {
+            return (System.nanoTime() - mStartNanos) / 1000000;
+        }
+
+        public double getNumbersPerSecond() {
+            return perSecond(getNumbersWritten());
+        }
+
+        public double getBytesPerSecond() {
+            return perSecond(getBytesRead());
+        }
+
+        private double perSecond(long count) {
+            long nanos = System.nanoTime() - mStartNanos;
+            return nanos <= 0 ? 0 : count * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d bytes, %d numbers read, %d written (%d failed), %.0f numbers/s",
+                    getBytesRead(), getNumbersRead(), getNumbersWritten(), getFailures(), getNumbersPerSecond());
+        }
+    }
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    static final int BATCH_SIZE = 1024;
+    static final int QUEUED_BATCHES = 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String HEADER = "number,e164,country,error\n";
+
+    /**
+     * Marks the end of the input in the queue.
+     */
+    private static final List<String> END = Collections.emptyList();
+
+    private final PhoneNumberNormalizer mNormalizer;
+    private OnProgressListener mListener;
+
+    public ContactFileNormalizer(PhoneNumberNormalizer normalizer) {
+        if (normalizer == null) throw new IllegalArgumentException();
+        mNormalizer = normalizer;
+    }
+
+    public void setOnProgressListener(OnProgressListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Normalizes the numbers of <code>in</code> into <code>out</code>.
+     */
+    public Counters normalize(File in, Format format, File out) throws IOException {
+        FileChannel input = new FileInputStream(in).getChannel();
+        try {
+            FileChannel output = new FileOutputStream(out).getChannel();
+            try {
+                return normalize(input, format, output);
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Normalizes the numbers read from <code>in</code> into <code>out</code>, blocking until
+     * <code>in</code> is exhausted. Neither channel is closed.
+     *
+     * @return the final counters
+     */
+    public Counters normalize(ReadableByteChannel in, Format format, WritableByteChannel out)
+            throws IOException {
+        Counters counters = new Counters();
+        BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+        Reader reader = new Reader(in, NumberExtractor.create(format), queue, counters);
+        Thread readerThread = new Thread(reader, "ContactFileNormalizer");
+        readerThread.start();
+
+        boolean done = false;
+        try {
+            Writer writer = new Writer(out);
+            writer.write(HEADER);
+            List<String> batch;
+            while ((batch = queue.take()) != END) {
+                List<PhoneNumberNormalizer.Result> results = mNormalizer.normalizeAll(batch);
+                for (int i = 0; i < results.size(); i++) {
+                    PhoneNumberNormalizer.Result result = results.get(i);
+                    writer.writeResult(result);
+                    if (!result.isSuccess()) {
+                        counters.mFailures.incrementAndGet();
+                    }
+                }
+                counters.mNumbersWritten.addAndGet(results.size());
+                if (mListener != null) {
+                    mListener.onProgress(counters);
+                }
+            }
+            writer.flush();
+            done = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            if (!done) {
+                readerThread.interrupt();
+            }
+        }
+
+        try {
+            readerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (reader.mError != null) {
+            throw reader.mError;
+        }
+        return counters;
+    }
+
+    /**
+     * Decodes the input chunk by chunk and queues its numbers in batches, followed by {@link #END}.
+     */
+    private static final class Reader implements Runnable {
+
+        private final ReadableByteChannel mIn;
+        private final NumberExtractor mExtractor;
+        private final BlockingQueue<List<String>> mQueue;
+        private final Counters mCounters;
+        private final CharsetDecoder mDecoder = UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private List<String> mBatch = new ArrayList<>(BATCH_SIZE);
+
+        /**
+         * Why reading failed. Read after the thread is joined.
+         */
+        IOException mError;
+
+        private final NumberExtractor.Sink mSink = new NumberExtractor.Sink() {
+            @Override
+            public void onNumber(String number) throws InterruptedException {
+                mBatch.add(number);
+                mCounters.mNumbersRead.incrementAndGet();
+                if (mBatch.size() == BATCH_SIZE) {
+                    putBatch();
+                }
+            }
+        };
+
+        Reader(ReadableByteChannel in, NumberExtractor extractor, BlockingQueue<List<String>> queue,
+               Counters counters) {
+            mIn = in;
+            mExtractor = extractor;
+            mQueue = queue;
+            mCounters = counters;
+        }
+
+        @Override
+        public void run() {
+            try {
+                try {
+                    read();
+                } catch (IOException e) {
+                    mError = e;
+                } catch (RuntimeException e) {
+                    mError = new IOException(e);
+                }
+                mQueue.put(END);
+            } catch (InterruptedException e) {
+                // the writing side gave up
+            }
+        }
+
+        private void read() throws IOException, InterruptedException {
+            ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+            CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+            boolean eof = false;
+            while (!eof) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                int read = mIn.read(bytes);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    mCounters.mBytesRead.addAndGet(read);
+                }
+                bytes.flip();
+                mDecoder.decode(bytes, chars, eof);
+                if (eof) {
+                    mDecoder.flush(chars);
+                }
+                bytes.compact();
+                chars.flip();
+                mExtractor.feed(chars, mSink);
+                chars.clear();
+            }
+            mExtractor.finish(mSink);
+            if (!mBatch.isEmpty()) {
+                putBatch();
+            }
+        }
+
+        private void putBatch() throws InterruptedException {
+            if (!mQueue.offer(mBatch)) {
+                // backpressure: wait for the writing side
+                long start = System.nanoTime();
+                mQueue.put(mBatch);
+                mCounters.mReaderBlockedNanos.addAndGet(System.nanoTime() - start);
+            }
+            mBatch = new ArrayList<>(BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Encodes rows into a reused buffer, writing it to the channel whenever it is full.
+     */
+    private static final class Writer {
+
+        private final WritableByteChannel mOut;
+        private final CharsetEncoder mEncoder = UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer mBuffer = ByteBuffer.allocate(CHUNK_SIZE);
+        private final StringBuilder mRow = new StringBuilder();
+
+        Writer(WritableByteChannel out) {
+            mOut = out;
+        }
+
+        void writeResult(PhoneNumberNormalizer.Result result) throws IOException {
+            mRow.setLength(0);
+            appendField(mRow, result.getInput());
+            mRow.append(',');
+            if (result.getE164() != null) {
+                mRow.append(result.getE164());
+            }
+            mRow.append(',');
+            if (result.getCountry() != null) {
+                mRow.append(result.getCountry().getCountryISO());
+            }
+            mRow.append(',');
+            if (result.getError() != null) {
+                mRow.append(result.getError().getErrorType());
+            }
+            mRow.append('\n');
+            write(mRow);
+        }
+
+        void write(CharSequence s) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(s);
+            while (true) {
+                CoderResult result = mEncoder.encode(chars, mBuffer, false);
+                if (result.isOverflow()) {
+                    drain();
+                } else {
+                    break;
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            mEncoder.encode(CharBuffer.allocate(0), mBuffer, true);
+            mEncoder.flush(mBuffer);
+            drain();
+        }
+
+        private void drain() throws IOException {
+            mBuffer.flip();
+            while (mBuffer.hasRemaining()) {
+                mOut.write(mBuffer);
+            }
+            mBuffer.clear();
+        }
+
+        private static void appendField(StringBuilder sb, String value) {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                sb.append(value);
+                return;
+            }
+            sb.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    sb.append('"');
+                }
+                sb.append(c);
+            }
+            sb.append('"');
+        }
+    }
+}
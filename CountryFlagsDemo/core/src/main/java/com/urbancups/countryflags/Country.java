@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+/**
+ * Immutable description of a country from <code>countries.dat</code>, see {@link CountryRegistry}.
+ * The flag of a country is the drawable <code>fNNN</code>, NNN being its {@link #getNum()}.
+ */
+public class Country {
+
+    /**
+     * Flag drawables by {@link #getNum()}, registered by the Android library.
+     */
+    private static volatile int[] sFlagResIds = new int[0];
+
+    private final String mName;
+    private final String mCountryISO;
+    private final int mCountryCode;
+    private final String mCountryCodeStr;
+    private final int mPriority;
+    private final int mNum;
+
+    Country(int num, String name, String countryISO, int countryCode, String countryCodeStr,
+            int priority) {
+        mNum = num;
+        mName = name;
+        mCountryISO = countryISO;
+        mCountryCode = countryCode;
+        mCountryCodeStr = countryCodeStr;
+        mPriority = priority;
+    }
+
+    /**
+     * Source compatible with the former <code>Country(Context, String, int)</code>, but not binary
+     * compatible: code compiled against that signature fails to link and must be recompiled.
+     *
+     * @param context unused, typed <code>Object</code> as core doesn't depend on Android
+     * @param str     a line of <code>countries.dat</code>: name, ISO code, dial code and optionally
+     *                priority, separated by commas
+     * @deprecated use the countries of {@link CountryRegistry#getCountries()}
+     */
+    @Deprecated
+    public Country(Object context, String str, int num) {
+        String[] data = str.split(",");
+        mNum = num;
+        mName = data[0];
+        mCountryISO = data[1];
+        mCountryCode = Integer.parseInt(data[2]);
+        mCountryCodeStr = "+" + data[2];
+        mPriority = data.length > 3 ? Integer.parseInt(data[3]) : 0;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public String getCountryISO() {
+        return mCountryISO;
+    }
+
+    public int getCountryCode() {
+        return mCountryCode;
+    }
+
+    public String getCountryCodeStr() {
+        return mCountryCodeStr;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public int getNum() {
+        return mNum;
+    }
+
+    /**
+     * @return the flag drawable of the country, or 0 if the Android library hasn't registered the
+     * flags yet, see {@link #setFlagResIds(int[])}
+     * @deprecated flags are drawn from <code>R.drawable.fNNN</code>, NNN being {@link #getNum()}
+     */
+    @Deprecated
+    public int getResId() {
+        int[] resIds = sFlagResIds;
+        return mNum < resIds.length ? resIds[mNum] : 0;
+    }
+
+    /**
+     * Called by the Android library as it starts, with its flag drawables by {@link #getNum()}.
+     */
+    public static void setFlagResIds(int[] resIds) {
+        sFlagResIds = resIds;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Country names in one locale, and the countries sorted by them, optionally limited to the regions
+ * of a {@link RegionAllowlist}.
+ * <p/>
+ * Names come from {@link Locale#getDisplayCountry(Locale)}, falling back to the English name of
+ * <code>countries.dat</code> when the platform has no name for a region. They are sorted once with
+ * {@link CollationKey}s of the locale's {@link Collator}. Instances are created lazily, only for
+ * the locales asked for, and are cached for the life of the process, so switching back to a locale
+ * never sorts again.
+ */
+public final class CountryNames {
+
+    private static final ConcurrentHashMap<Locale, CountryNames> sCache = new ConcurrentHashMap<>();
+
+    private final Locale mLocale;
+
+    /**
+     * Names by {@link Country#getNum()}, null for countries that aren't listed.
+     */
+    private final String[] mNames;
+
+    private final List<Country> mSortedCountries;
+
+    /**
+     * Position in mSortedCountries by {@link Country#getNum()}, -1 for countries that aren't listed.
+     */
+    private final int[] mPositions;
+
+    private volatile CountrySearchIndex mSearchIndex;
+
+    private CountryNames(List<Country> allCountries, RegionAllowlist allowlist, Locale locale) {
+        mLocale = locale;
+        List<Country> countries = allCountries;
+        if (allowlist != null) {
+            countries = new ArrayList<>(allowlist.getRegions().size());
+            for (int i = 0; i < allCountries.size(); i++) {
+                if (allowlist.contains(allCountries.get(i))) {
+                    countries.add(allCountries.get(i));
+                }
+            }
+        }
+        int size = countries.size();
+        mNames = new String[allCountries.size()];
+
+        Collator collator = Collator.getInstance(locale);
+        final CollationKey[] keys = new CollationKey[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            Country country = countries.get(i);
+            String name = new Locale("", country.getCountryISO()).getDisplayCountry(locale);
+            if (name.isEmpty() || name.equalsIgnoreCase(country.getCountryISO())) {
+                name = country.getName();
+            }
+            mNames[country.getNum()] = name;
+            keys[i] = collator.getCollationKey(name);
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return keys[a].compareTo(keys[b]);
+            }
+        });
+
+        List<Country> sorted = new ArrayList<>(size);
+        mPositions = new int[allCountries.size()];
+        Arrays.fill(mPositions, -1);
+        for (int i = 0; i < size; i++) {
+            Country country = countries.get(order[i]);
+            sorted.add(country);
+            mPositions[country.getNum()] = i;
+        }
+        mSortedCountries = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * Returns the names for <code>locale</code>, creating them on the calling thread the first time.
+     */
+    public static CountryNames getInstance(Locale locale) {
+        return getInstance(locale, null);
+    }
+
+    /**
+     * Returns the names of the countries of <code>allowlist</code> for <code>locale</code>,
+     * creating them on the calling thread the first time.
+     *
+     * @param allowlist the regions to list, or null for all of them
+     */
+    public static CountryNames getInstance(Locale locale, RegionAllowlist allowlist) {
+        ConcurrentHashMap<Locale, CountryNames> cache = allowlist == null ? sCache : allowlist.mNames;
+        CountryNames names = cache.get(locale);
+        if (names == null) {
+            names = new CountryNames(CountryRegistry.getInstance().getCountries(), allowlist, locale);
+            CountryNames previous = cache.putIfAbsent(locale, names);
+            if (previous != null) {
+                names = previous;
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the names for <code>locale</code> if they are already created, null otherwise
+     */
+    public static CountryNames peek(Locale locale) {
+        return sCache.get(locale);
+    }
+
+    /**
+     * @return the names of the countries of <code>allowlist</code> for <code>locale</code> if they
+     * are already created, null otherwise
+     */
+    public static CountryNames peek(Locale locale, RegionAllowlist allowlist) {
+        return allowlist == null ? peek(locale) : allowlist.mNames.get(locale);
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * @return the name of <code>country</code>, or null if it isn't listed
+     */
+    public String getName(Country country) {
+        return mNames[country.getNum()];
+    }
+
+    /**
+     * @return all listed countries, sorted by name
+     */
+    public List<Country> getSortedCountries() {
+        return mSortedCountries;
+    }
+
+    /**
+     * @return the position of <code>country</code> in {@link #getSortedCountries()}, or -1 if it
+     * isn't listed
+     */
+    public int getPosition(Country country) {
+        return mPositions[country.getNum()];
+    }
+
+    /**
+     * Returns the search index over these names, building it on the calling thread the first time.
+     * Results are positions in {@link #getSortedCountries()}.
+     */
+    public CountrySearchIndex getSearchIndex() {
+        CountrySearchIndex index = mSearchIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = mSearchIndex;
+                if (index == null) {
+                    List<String> names = new ArrayList<>(mSortedCountries.size());
+                    for (int i = 0; i < mSortedCountries.size(); i++) {
+                        names.add(getName(mSortedCountries.get(i)));
+                    }
+                    index = new CountrySearchIndex(mSortedCountries, names);
+                    mSearchIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Process-wide list of countries, created once from the tables compiled out of
+ * <code>countries.dat</code> at build time (see <code>countries.gradle</code>) and shared by all
+ * components.
+ * <p/>
+ * The registry is immutable once created and is published through a volatile field, so it can be
+ * read from any thread without further synchronization. Names and sort order depend on the locale and
+ * live in {@link CountryNames}.
+ */
+public final class CountryRegistry {
+
+    private static final Object sLock = new Object();
+    private static volatile CountryRegistry sInstance;
+
+    private final List<Country> mCountries;
+    private final DialCodeTrie mDialCodeTrie;
+
+    /**
+     * Countries by upper case ISO code, as libphonenumber names regions.
+     */
+    private final HashMap<String, Country> mByRegion;
+
+    private CountryRegistry(List<Country> countries) {
+        mCountries = Collections.unmodifiableList(countries);
+        mDialCodeTrie = new DialCodeTrie(countries, CountryTable.PREFIXES);
+        mByRegion = new HashMap<>(countries.size() * 2);
+        for (int i = 0; i < countries.size(); i++) {
+            Country country = countries.get(i);
+            mByRegion.put(country.getCountryISO().toUpperCase(Locale.US), country);
+        }
+    }
+
+    /**
+     * Returns the registry, creating it on the calling thread if nobody did it before.
+     * Callers on the UI thread should use {@link #peek()} and load in the background instead.
+     */
+    public static CountryRegistry getInstance() {
+        CountryRegistry registry = sInstance;
+        if (registry == null) {
+            synchronized (sLock) {
+                registry = sInstance;
+                if (registry == null) {
+                    registry = new CountryRegistry(load());
+                    sInstance = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * @return the registry if it is already loaded, null otherwise
+     */
+    public static CountryRegistry peek() {
+        return sInstance;
+    }
+
+    static List<Country> load() {
+        final ArrayList<Country> data = new ArrayList<>(CountryTable.SIZE);
+        for (int i = 0; i < CountryTable.SIZE; i++) {
+            data.add(new Country(i, CountryTable.NAMES[i], CountryTable.ISO[i], CountryTable.CODES[i],
+                    CountryTable.CODE_STRINGS[i], CountryTable.PRIORITIES[i]));
+        }
+        return data;
+    }
+
+    /**
+     * @return all countries, in file order. The position of a country is its {@link Country#getNum()}.
+     */
+    public List<Country> getCountries() {
+        return mCountries;
+    }
+
+    /**
+     * @return the trie resolving dial prefixes to countries
+     */
+    public DialCodeTrie getDialCodeTrie() {
+        return mDialCodeTrie;
+    }
+
+    /**
+     * @return the main country (priority 0) for the given dial code, or null if there is none
+     */
+    public Country getDefaultCountryForCode(int countryCode) {
+        return mDialCodeTrie.find(countryCode);
+    }
+
+    /**
+     * @param region a region code as used by libphonenumber, e.g. "US"
+     * @return the country of the region, or null if there is none
+     */
+    public Country getCountryForRegion(String region) {
+        return region == null ? null : mByRegion.get(region);
+    }
+
+    /**
+     * Picks the country to select for a user in <code>region</code>: the country of the region, or
+     * the main country of its calling code if the region isn't listed. A country outside
+     * <code>allowlist</code> gives way to the main country of its calling code, if that one is
+     * allowed.
+     *
+     * @param region a region code, e.g. "CA"
+     * @param allowlist the regions listed, or null for all of them
+     * @return the country, or null if none fits
+     */
+    public Country getDefaultCountryForRegion(String region, RegionAllowlist allowlist) {
+        if (region == null) {
+            return null;
+        }
+        region = region.toUpperCase(Locale.US);
+        Country country = getCountryForRegion(region);
+        if (country == null) {
+            PhoneNumberUtil util = allowlist == null ? PhoneNumberUtil.getInstance() : allowlist.getPhoneNumberUtil();
+            country = getDefaultCountryForCode(util.getCountryCodeForRegion(region));
+        }
+        if (country != null && allowlist != null && !allowlist.contains(country)) {
+            country = getDefaultCountryForCode(country.getCountryCode());
+            if (country != null && !allowlist.contains(country)) {
+                country = null;
+            }
+        }
+        return country;
+    }
+
+    /**
+     * Finds the country of a number being typed. Text starting with '+' is resolved by its dial
+     * code, anything else as national digits dialled under the code of <code>selected</code>.
+     *
+     * @param selected the currently selected country, or null
+     * @return the detected country, or null if there is none or it is <code>selected</code>
+     */
+    public Country detectCountry(CharSequence phone, Country selected) {
+        Country country;
+        if (phone.length() > 0 && phone.charAt(0) == '+') {
+            country = mDialCodeTrie.find(phone);
+        } else if (selected != null) {
+            // e.g. a Canadian area code typed while +1 is selected
+            country = mDialCodeTrie.findWithin(selected, phone);
+        } else {
+            country = null;
+        }
+        return country == selected ? null : country;
+    }
+}
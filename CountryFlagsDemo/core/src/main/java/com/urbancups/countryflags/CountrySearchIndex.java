@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix index over country names, ISO codes and dial codes, built once per list of countries.
+ * <p/>
+ * Names are folded to lower case without accents ("Curaçao" matches "cura") and split into words.
+ * A query matches a country if each of its words is the prefix of a word of the name ("new z"
+ * matches "New Zealand"), if it is its ISO code, or if it is the prefix of its dial code (with or
+ * without '+'). Every word start is indexed by its first one and two folded chars, in any script,
+ * so a query only checks the countries sharing the first chars of its first word.
+ * <p/>
+ * {@link #search} does not allocate. It reuses buffers of the index, so concurrent searches are
+ * serialized.
+ */
+public class CountrySearchIndex {
+
+    private static final int[] NO_POSTINGS = {};
+
+    private static final int ISO_LENGTH = 2;
+
+    /**
+     * Folded form of U+0000..U+017F, which covers all accented chars of the country names.
+     */
+    private static final char[] FOLD = new char[0x180];
+
+    static {
+        for (char c = 0; c < FOLD.length; c++) {
+            String folded = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            FOLD[c] = Character.toLowerCase(folded.charAt(0));
+        }
+    }
+
+    private final List<Country> mCountries;
+
+    /**
+     * Folded name of every country, in list order.
+     */
+    private final char[][] mNames;
+    private final char[][] mIsos;
+    private final char[][] mDialCodes;
+
+    /**
+     * Countries having a word starting with the chars of a key, see {@link #key(char, char)}. Keys
+     * are sorted, mPostings[i] belongs to mKeys[i].
+     */
+    private final int[] mKeys;
+    private final int[][] mPostings;
+
+    /**
+     * Countries sorted by dial code, as strings.
+     */
+    private final int[] mByDialCode;
+
+    private final char[] mQuery = new char[64];
+    private final int[] mMarks;
+    private int mMark;
+
+    public CountrySearchIndex(List<Country> countries, List<String> names) {
+        int size = countries.size();
+        mCountries = countries;
+        mNames = new char[size][];
+        mIsos = new char[size][];
+        mDialCodes = new char[size][];
+        mMarks = new int[size];
+
+        HashMap<Integer, List<Integer>> postings = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            Country country = countries.get(i);
+            char[] name = fold(names.get(i));
+            mNames[i] = name;
+            mIsos[i] = fold(country.getCountryISO());
+            mDialCodes[i] = country.getCountryCodeStr().substring(1).toCharArray();
+
+            for (int j = 0; j < name.length; j++) {
+                if (isWordStart(name, j)) {
+                    addPosting(postings, key(name[j], ' '), i);
+                    if (j + 1 < name.length && name[j + 1] != ' ') {
+                        addPosting(postings, key(name[j], name[j + 1]), i);
+                    }
+                }
+            }
+        }
+        mKeys = new int[postings.size()];
+        int k = 0;
+        for (Integer key : postings.keySet()) {
+            mKeys[k++] = key;
+        }
+        Arrays.sort(mKeys);
+        mPostings = new int[mKeys.length][];
+        for (k = 0; k < mKeys.length; k++) {
+            List<Integer> posting = postings.get(mKeys[k]);
+            mPostings[k] = new int[posting.size()];
+            for (int j = 0; j < mPostings[k].length; j++) {
+                mPostings[k][j] = posting.get(j);
+            }
+        }
+
+        Integer[] byDialCode = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            byDialCode[i] = i;
+        }
+        Arrays.sort(byDialCode, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareChars(mDialCodes[a], mDialCodes[b]);
+            }
+        });
+        mByDialCode = new int[size];
+        for (int i = 0; i < size; i++) {
+            mByDialCode[i] = byDialCode[i];
+        }
+    }
+
+    /**
+     * Finds the countries matching <code>query</code>.
+     *
+     * @param results receives the positions of the matching countries in the indexed list, in list
+     *                order. Must be at least as large as the list.
+     * @return the number of matches. An empty query matches all countries.
+     */
+    public synchronized int search(CharSequence query, int[] results) {
+        int length = foldQuery(query);
+        int size = mNames.length;
+        if (length == 0) {
+            for (int i = 0; i < size; i++) {
+                results[i] = i;
+            }
+            return size;
+        }
+
+        if (++mMark == 0) {
+            Arrays.fill(mMarks, 0);
+            mMark = 1;
+        }
+        int count = 0;
+
+        if (isDigits(mQuery, length)) {
+            // dial codes sharing the prefix are adjacent in mByDialCode
+            int from = lowerBound(length);
+            for (int i = from; i < size && comparePrefix(mDialCodes[mByDialCode[i]], length) == 0; i++) {
+                mMarks[mByDialCode[i]] = mMark;
+                count++;
+            }
+        } else {
+            // candidates share the first one or two chars of the first word
+            int[] candidates = getPostings(key(mQuery[0], length > 1 ? mQuery[1] : ' '));
+            for (int candidate : candidates) {
+                if (matchesAllWords(mNames[candidate], length)) {
+                    mMarks[candidate] = mMark;
+                    count++;
+                }
+            }
+            if (length == ISO_LENGTH) {
+                for (int i = 0; i < size; i++) {
+                    if (mMarks[i] != mMark && mIsos[i].length == length && comparePrefix(mIsos[i], length) == 0) {
+                        mMarks[i] = mMark;
+                        count++;
+                    }
+                }
+            }
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+        int n = 0;
+        for (int i = 0; i < size && n < count; i++) {
+            if (mMarks[i] == mMark) {
+                results[n++] = i;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return the indexed country at <code>position</code>
+     */
+    public Country getCountry(int position) {
+        return mCountries.get(position);
+    }
+
+    public int size() {
+        return mCountries.size();
+    }
+
+    private int foldQuery(CharSequence query) {
+        int length = 0;
+        int len = query.length();
+        for (int i = 0; i < len && length < mQuery.length; i++) {
+            char c = query.charAt(i);
+            if (c == '+' && length == 0) {
+                continue;
+            }
+            c = foldChar(c);
+            if (c == ' ' && (length == 0 || mQuery[length - 1] == ' ')) {
+                continue;
+            }
+            mQuery[length++] = c;
+        }
+        while (length > 0 && mQuery[length - 1] == ' ') {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * @return whether every word of the first <code>length</code> chars of the query is the prefix
+     * of a word of <code>name</code>
+     */
+    private boolean matchesAllWords(char[] name, int length) {
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && mQuery[end] != ' ') {
+                end++;
+            }
+            if (!hasWordWithPrefix(name, start, end - start)) {
+                return false;
+            }
+            start = end + 1;
+        }
+        return true;
+    }
+
+    private boolean hasWordWithPrefix(char[] name, int queryOffset, int length) {
+        for (int j = 0; j + length <= name.length; j++) {
+            if (isWordStart(name, j) && regionMatches(name, j, queryOffset, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean regionMatches(char[] name, int offset, int queryOffset, int length) {
+        for (int k = 0; k < length; k++) {
+            if (name[offset + k] != mQuery[queryOffset + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int[] getPostings(int key) {
+        int i = Arrays.binarySearch(mKeys, key);
+        return i < 0 ? NO_POSTINGS : mPostings[i];
+    }
+
+    private int lowerBound(int length) {
+        int lo = 0;
+        int hi = mByDialCode.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePrefix(mDialCodes[mByDialCode[mid]], length) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return 0 if <code>a</code> starts with the first <code>length</code> chars of the query,
+     * otherwise the lexicographic order of <code>a</code> relative to them
+     */
+    private int comparePrefix(char[] a, int length) {
+        for (int i = 0; i < length; i++) {
+            if (i == a.length) {
+                return -1;
+            }
+            if (a[i] != mQuery[i]) {
+                return a[i] - mQuery[i];
+            }
+        }
+        return 0;
+    }
+
+    private static int compareChars(char[] a, char[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            if (a[i] != b[i]) {
+                return a[i] - b[i];
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static boolean isDigits(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            if (chars[i] < '0' || chars[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWordStart(char[] name, int j) {
+        return name[j] != ' ' && (j == 0 || name[j - 1] == ' ');
+    }
+
+    static char foldChar(char c) {
+        if (c < FOLD.length) {
+            c = FOLD[c];
+        } else {
+            c = Character.toLowerCase(c);
+        }
+        return Character.isLetterOrDigit(c) ? c : ' ';
+    }
+
+    private static char[] fold(String s) {
+        char[] chars = new char[s.length()];
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = foldChar(s.charAt(i));
+            if (c == ' ' && (length == 0 || chars[length - 1] == ' ')) {
+                continue;
+            }
+            chars[length++] = c;
+        }
+        while (length > 0 && chars[length - 1] == ' ') {
+            length--;
+        }
+        return Arrays.copyOf(chars, length);
+    }
+
+    /**
+     * Key of the word starts beginning with the folded chars <code>c1</code> and <code>c2</code>,
+     * or with <code>c1</code> alone when <code>c2</code> is ' '.
+     */
+    private static int key(char c1, char c2) {
+        return c1 << 16 | c2;
+    }
+
+    private static void addPosting(Map<Integer, List<Integer>> postings, int key, int country) {
+        List<Integer> posting = postings.get(key);
+        if (posting == null) {
+            posting = new ArrayList<>();
+            postings.put(key, posting);
+        }
+        if (posting.isEmpty() || posting.get(posting.size() - 1) != country) {
+            posting.add(country);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Digit trie over dial prefixes, resolving a number to a country by longest-prefix match.
+ * <p/>
+ * Every country is reachable through its dial code (e.g. 44, 1684 for American Samoa) and through
+ * its additional prefixes from <code>countries.dat</code>, such as NANP area codes (1204 for
+ * Canada) or shared codes (76, 77 for Kazakhstan). When several countries share a prefix, the one
+ * with priority 0 owns it. Lookups walk the digits once and do not allocate.
+ */
+public class DialCodeTrie {
+
+    private static final int NO_NODE = 0;
+
+    /**
+     * mChildren[node * 10 + digit] is the child node, or NO_NODE. The root is node 0 and is never
+     * a child, so 0 can mark a missing child.
+     */
+    private final int[] mChildren;
+    private final Country[] mValues;
+
+    public DialCodeTrie(List<Country> countries, String[][] extraPrefixes) {
+        int[] children = new int[10 * 64];
+        Country[] values = new Country[64];
+        int size = 1;
+
+        for (int i = 0; i < countries.size(); i++) {
+            Country country = countries.get(i);
+            String[] prefixes = extraPrefixes[country.getNum()];
+            for (int p = -1; p < prefixes.length; p++) {
+                CharSequence prefix = p < 0 ? country.getCountryCodeStr() : prefixes[p];
+                int node = 0;
+                for (int j = 0; j < prefix.length(); j++) {
+                    int digit = prefix.charAt(j) - '0';
+                    if (digit < 0 || digit > 9) {
+                        continue;
+                    }
+                    int child = children[node * 10 + digit];
+                    if (child == NO_NODE) {
+                        if (size == values.length) {
+                            values = Arrays.copyOf(values, size * 2);
+                            children = Arrays.copyOf(children, size * 2 * 10);
+                        }
+                        child = size++;
+                        children[node * 10 + digit] = child;
+                    }
+                    node = child;
+                }
+                if (values[node] == null || country.getPriority() < values[node].getPriority()) {
+                    values[node] = country;
+                }
+            }
+        }
+
+        mChildren = Arrays.copyOf(children, size * 10);
+        mValues = Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Resolves an international number, e.g. "+1 242-555-0100".
+     *
+     * @param number the number, with or without a leading '+'. Separators are skipped.
+     * @return the country owning the longest matching prefix, or null if none matches
+     */
+    public Country find(CharSequence number) {
+        Country best = null;
+        int node = 0;
+        int len = number.length();
+        for (int i = 0; i < len; i++) {
+            int digit = number.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                continue;
+            }
+            node = mChildren[node * 10 + digit];
+            if (node == NO_NODE) {
+                break;
+            }
+            if (mValues[node] != null) {
+                best = mValues[node];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the country owning exactly the given dial code, or null if there is none
+     */
+    public Country find(int countryCode) {
+        int node = walk(0, countryCode);
+        return node == NO_NODE ? null : mValues[node];
+    }
+
+    /**
+     * Resolves a national number dialled under the code of <code>country</code>. Only prefixes
+     * longer than that code count, so this answers whether the national digits point to a more
+     * specific country, e.g. the area code 204 under +1 points to Canada.
+     *
+     * @return the country owning the longest matching prefix longer than the country's own code,
+     * or null if there is no such prefix
+     */
+    public Country findWithin(Country country, CharSequence nationalNumber) {
+        int node = walk(0, country.getCountryCode());
+        if (node == NO_NODE) {
+            return null;
+        }
+        Country best = null;
+        int len = nationalNumber.length();
+        for (int i = 0; i < len; i++) {
+            int digit = nationalNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                continue;
+            }
+            node = mChildren[node * 10 + digit];
+            if (node == NO_NODE) {
+                break;
+            }
+            if (mValues[node] != null) {
+                best = mValues[node];
+            }
+        }
+        return best;
+    }
+
+    private int walk(int node, int number) {
+        if (number >= 10) {
+            node = walk(node, number / 10);
+            if (node == NO_NODE) {
+                return NO_NODE;
+            }
+        }
+        return mChildren[node * 10 + number % 10];
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.AsYouTypeFormatter;
+
+/**
+ * Wraps an {@link AsYouTypeFormatter} so that reformatting a field after an edit only feeds the
+ * digits that actually changed.
+ * <p/>
+ * The formatter output after every digit is kept as a checkpoint. Checkpoints survive removing
+ * digits, so any input that is a prefix of the digits fed so far, e.g. after a backspace or after
+ * retyping the deleted digits, is answered from them without touching the formatter and without
+ * allocating. Appending digits feeds only the new ones. Since {@link AsYouTypeFormatter} cannot be
+ * rewound, the formatter is replayed from the first digit only when an input departs from the
+ * digits fed so far.
+ */
+public class IncrementalAsYouTypeFormatter {
+
+    private static final int INITIAL_CAPACITY = 20;
+
+    /**
+     * The calls made to the wrapped {@link AsYouTypeFormatter}, so that tests can tell its
+     * allocations from ours.
+     */
+    interface DigitFormatter {
+
+        String inputDigit(char c);
+
+        void clear();
+    }
+
+    private final DigitFormatter mFormatter;
+
+    /**
+     * Dialable chars of the input being formatted.
+     */
+    private char[] mInput = new char[INITIAL_CAPACITY];
+
+    /**
+     * Dialable chars the wrapped formatter has consumed, mDigits[0..mFed).
+     */
+    private char[] mDigits = new char[INITIAL_CAPACITY];
+
+    /**
+     * mOutputs[i] is the formatter output after consuming mDigits[0..i].
+     */
+    private String[] mOutputs = new String[INITIAL_CAPACITY];
+
+    /**
+     * Number of chars the wrapped formatter has consumed.
+     */
+    private int mFed;
+
+    public IncrementalAsYouTypeFormatter(final AsYouTypeFormatter formatter) {
+        if (formatter == null) throw new IllegalArgumentException();
+        mFormatter = new DigitFormatter() {
+            @Override
+            public String inputDigit(char c) {
+                return formatter.inputDigit(c);
+            }
+
+            @Override
+            public void clear() {
+                formatter.clear();
+            }
+        };
+    }
+
+    IncrementalAsYouTypeFormatter(DigitFormatter formatter) {
+        if (formatter == null) throw new IllegalArgumentException();
+        mFormatter = formatter;
+    }
+
+    /**
+     * Formats all dialable chars of <code>s</code>, ignoring any separators.
+     *
+     * @return the formatted number, or an empty string if <code>s</code> has no dialable chars
+     */
+    public String format(CharSequence s) {
+        int len = s.length();
+        if (mInput.length < len) {
+            mInput = new char[len];
+        }
+        int count = 0;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (isNonSeparator(c)) {
+                mInput[count++] = c;
+            }
+        }
+        if (count == 0) {
+            return "";
+        }
+
+        int common = 0;
+        int limit = Math.min(count, mFed);
+        while (common < limit && mInput[common] == mDigits[common]) {
+            common++;
+        }
+        if (common == count) {
+            return mOutputs[count - 1];
+        }
+
+        if (mFed > common) {
+            // the input departs from what was fed
+            mFormatter.clear();
+            mFed = 0;
+        }
+        if (mDigits.length < count) {
+            int capacity = Math.max(count, mDigits.length * 2);
+            char[] digits = new char[capacity];
+            System.arraycopy(mDigits, 0, digits, 0, mFed);
+            mDigits = digits;
+            String[] outputs = new String[capacity];
+            System.arraycopy(mOutputs, 0, outputs, 0, mFed);
+            mOutputs = outputs;
+        }
+        for (int i = mFed; i < count; i++) {
+            mDigits[i] = mInput[i];
+            mOutputs[i] = mFormatter.inputDigit(mInput[i]);
+        }
+        mFed = count;
+        return mOutputs[count - 1];
+    }
+
+    /**
+     * Drops all checkpoints and clears the wrapped formatter.
+     */
+    public void clear() {
+        mFormatter.clear();
+        mFed = 0;
+    }
+
+    /**
+     * Same as <code>android.telephony.PhoneNumberUtils.isNonSeparator(char)</code>.
+     */
+    public static boolean isNonSeparator(char c) {
+        return (c >= '0' && c <= '9') || c == '*' || c == '#' || c == '+'
+                || c == 'N' || c == ';' || c == ',';
+    }
+}
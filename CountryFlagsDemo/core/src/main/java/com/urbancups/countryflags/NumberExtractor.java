@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Pulls phone numbers out of a contact file fed to it in chunks of chars, see
+ * {@link ContactFileNormalizer}. Chunks may end anywhere, even inside a field. A field or line
+ * longer than {@link #MAX_LENGTH} is cut, so a malformed file can't grow the buffers.
+ */
+abstract class NumberExtractor {
+
+    static final int MAX_LENGTH = 4096;
+
+    interface Sink {
+
+        void onNumber(String number) throws InterruptedException;
+
+    }
+
+    /**
+     * Consumes all remaining chars of <code>chars</code>.
+     */
+    abstract void feed(CharBuffer chars, Sink sink) throws InterruptedException;
+
+    /**
+     * Called after the last chunk.
+     */
+    abstract void finish(Sink sink) throws InterruptedException;
+
+    static NumberExtractor create(ContactFileNormalizer.Format format) {
+        switch (format) {
+            case CSV:
+                return new Csv();
+            case VCARD:
+                return new VCard();
+            default:
+                throw new IllegalArgumentException(String.valueOf(format));
+        }
+    }
+
+    private static void append(StringBuilder sb, char c) {
+        if (sb.length() < MAX_LENGTH) {
+            sb.append(c);
+        }
+    }
+
+    /**
+     * RFC 4180 CSV. If the first record names columns containing "phone", "tel" or "mobile", the
+     * numbers are read from those columns, otherwise the first record is data and the numbers are
+     * read from the first column.
+     */
+    static final class Csv extends NumberExtractor {
+
+        private static final String[] PHONE_HEADERS = {"phone", "tel", "mobile"};
+
+        private final StringBuilder mField = new StringBuilder();
+        private final ArrayList<String> mRecord = new ArrayList<>();
+        private boolean mInQuotes;
+        private boolean mAfterQuote;
+        private int[] mPhoneColumns;
+
+        @Override
+        void feed(CharBuffer chars, Sink sink) throws InterruptedException {
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                if (mInQuotes) {
+                    if (c == '"') {
+                        mInQuotes = false;
+                        mAfterQuote = true;
+                    } else {
+                        append(mField, c);
+                    }
+                    continue;
+                }
+                switch (c) {
+                    case '"':
+                        if (mAfterQuote) {
+                            // "" inside a quoted field
+                            append(mField, '"');
+                            mInQuotes = true;
+                        } else if (mField.length() == 0) {
+                            mInQuotes = true;
+                        } else {
+                            append(mField, c);
+                        }
+                        break;
+                    case ',':
+                        endField();
+                        break;
+                    case '\n':
+                        endField();
+                        endRecord(sink);
+                        break;
+                    case '\r':
+                        break;
+                    default:
+                        append(mField, c);
+                        break;
+                }
+                mAfterQuote = false;
+            }
+        }
+
+        @Override
+        void finish(Sink sink) throws InterruptedException {
+            if (mField.length() > 0 || !mRecord.isEmpty()) {
+                endField();
+                endRecord(sink);
+            }
+        }
+
+        private void endField() {
+            mRecord.add(mField.toString());
+            mField.setLength(0);
+        }
+
+        private void endRecord(Sink sink) throws InterruptedException {
+            if (mPhoneColumns == null) {
+                mPhoneColumns = findPhoneColumns(mRecord);
+                if (mPhoneColumns != null) {
+                    mRecord.clear();
+                    return;
+                }
+                mPhoneColumns = new int[]{0};
+            }
+            for (int column : mPhoneColumns) {
+                if (column < mRecord.size()) {
+                    String number = mRecord.get(column).trim();
+                    if (!number.isEmpty()) {
+                        sink.onNumber(number);
+                    }
+                }
+            }
+            mRecord.clear();
+        }
+
+        private static int[] findPhoneColumns(ArrayList<String> header) {
+            int[] columns = new int[header.size()];
+            int count = 0;
+            for (int i = 0; i < header.size(); i++) {
+                String name = header.get(i).toLowerCase(Locale.US);
+                for (String phoneHeader : PHONE_HEADERS) {
+                    if (name.contains(phoneHeader)) {
+                        columns[count++] = i;
+                        break;
+                    }
+                }
+            }
+            if (count == 0) {
+                return null;
+            }
+            int[] found = new int[count];
+            System.arraycopy(columns, 0, found, 0, count);
+            return found;
+        }
+    }
+
+    /**
+     * vCard 2.1 to 4.0. Numbers are the values of TEL properties, with or without group and
+     * parameters, e.g. <code>item1.TEL;TYPE=CELL:+1 650 253 0000</code>. Folded lines are unfolded.
+     */
+    static final class VCard extends NumberExtractor {
+
+        private static final String TEL = "TEL";
+        private static final String TEL_URI = "tel:";
+
+        private final StringBuilder mLine = new StringBuilder();
+
+        /**
+         * A line ended, but the next char decides whether it continues on the next line.
+         */
+        private boolean mLineEnded;
+
+        @Override
+        void feed(CharBuffer chars, Sink sink) throws InterruptedException {
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                if (c == '\r') {
+                    continue;
+                }
+                if (mLineEnded) {
+                    mLineEnded = false;
+                    if (c == ' ' || c == '\t') {
+                        // folded line
+                        continue;
+                    }
+                    endLine(sink);
+                }
+                if (c == '\n') {
+                    mLineEnded = true;
+                } else {
+                    append(mLine, c);
+                }
+            }
+        }
+
+        @Override
+        void finish(Sink sink) throws InterruptedException {
+            endLine(sink);
+        }
+
+        private void endLine(Sink sink) throws InterruptedException {
+            String number = telValue(mLine);
+            mLine.setLength(0);
+            if (number != null) {
+                sink.onNumber(number);
+            }
+        }
+
+        private static String telValue(StringBuilder line) {
+            int colon = line.indexOf(":");
+            if (colon < 0) {
+                return null;
+            }
+            int end = line.indexOf(";");
+            if (end < 0 || end > colon) {
+                end = colon;
+            }
+            int start = line.lastIndexOf(".", end) + 1;
+            if (end - start != TEL.length() || !line.substring(start, end).equalsIgnoreCase(TEL)) {
+                return null;
+            }
+            String value = line.substring(colon + 1).trim();
+            if (value.regionMatches(true, 0, TEL_URI, 0, TEL_URI.length())) {
+                value = value.substring(TEL_URI.length());
+            }
+            return value.isEmpty() ? null : value;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of parsed, validated and formatted numbers, so that validating the same input
+ * again costs a map lookup instead of a run of libphonenumber.
+ * <p/>
+ * Entries are keyed by the region and the number without separators, so "(650) 253-0000" and
+ * "650 253 0000" share an entry. The least recently used entry is evicted when the cache is full.
+ * Instances are thread-safe. A miss is parsed outside the lock, so concurrent misses don't wait
+ * for each other.
+ */
+public final class PhoneNumberCache {
+
+    static final int DEFAULT_MAX_SIZE = 64;
+
+    private static PhoneNumberCache sInstance;
+
+    /**
+     * Outcome of parsing one number against one region.
+     */
+    public static final class Entry {
+
+        private final Phonenumber.PhoneNumber mNumber;
+        private final NumberParseException.ErrorType mErrorType;
+        private final String mErrorMessage;
+        private final boolean mValid;
+        private final String mE164;
+        private final String mRegionCode;
+
+        private Entry(Phonenumber.PhoneNumber number, boolean valid, String e164, String regionCode) {
+            mNumber = number;
+            mValid = valid;
+            mE164 = e164;
+            mRegionCode = regionCode;
+            mErrorType = null;
+            mErrorMessage = null;
+        }
+
+        private Entry(NumberParseException error) {
+            mNumber = null;
+            mValid = false;
+            mE164 = null;
+            mRegionCode = null;
+            mErrorType = error.getErrorType();
+            mErrorMessage = error.getMessage();
+        }
+
+        public boolean isParsed() {
+            return mNumber != null;
+        }
+
+        /**
+         * @return the country calling code of the number, e.g. 44, or 0 if it couldn't be parsed
+         */
+        public int getCountryCode() {
+            return mNumber == null ? 0 : mNumber.getCountryCode();
+        }
+
+        /**
+         * @return whether the number is valid for its region, see
+         * {@link PhoneNumberUtil#isValidNumber(Phonenumber.PhoneNumber)}
+         */
+        public boolean isValid() {
+            return mValid;
+        }
+
+        /**
+         * @return the number in E.164, or null if it couldn't be parsed
+         */
+        public String getE164() {
+            return mE164;
+        }
+
+        /**
+         * @return the region the number belongs to, e.g. "GB" for "+44 7400 123456", or null if it
+         * couldn't be parsed or its region is unknown
+         */
+        public String getRegionCode() {
+            return mRegionCode;
+        }
+
+        /**
+         * @return a copy of the parsed number, or null if it couldn't be parsed
+         */
+        public Phonenumber.PhoneNumber getPhoneNumber() {
+            return mNumber == null ? null : new Phonenumber.PhoneNumber().mergeFrom(mNumber);
+        }
+
+        /**
+         * @return a new exception describing why the number couldn't be parsed, or null if it was
+         */
+        public NumberParseException getError() {
+            return mErrorType == null ? null : new NumberParseException(mErrorType, mErrorMessage);
+        }
+    }
+
+    private final PhoneNumberUtil mPhoneNumberUtil;
+    private final int mMaxSize;
+    private final LinkedHashMap<String, Entry> mEntries;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    public PhoneNumberCache(int maxSize) {
+        this(maxSize, PhoneNumberUtil.getInstance());
+    }
+
+    /**
+     * @param phoneNumberUtil the instance to parse with, e.g. the one of a {@link RegionAllowlist}
+     */
+    public PhoneNumberCache(int maxSize, PhoneNumberUtil phoneNumberUtil) {
+        if (maxSize <= 0 || phoneNumberUtil == null) throw new IllegalArgumentException();
+        mPhoneNumberUtil = phoneNumberUtil;
+        mMaxSize = maxSize;
+        mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PhoneNumberCache.Entry> eldest) {
+                if (size() > mMaxSize) {
+                    mEvictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cache shared by the components of the process
+     */
+    public static synchronized PhoneNumberCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new PhoneNumberCache(DEFAULT_MAX_SIZE);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the parsed <code>number</code>, parsing it on the calling thread if it isn't cached.
+     *
+     * @param region the region to parse national numbers with, e.g. "US", or null if only
+     *               international numbers are expected
+     */
+    public Entry get(String number, String region) {
+        String key = key(number, region);
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry != null) {
+                mHitCount++;
+                return entry;
+            }
+            mMissCount++;
+        }
+
+        Entry entry;
+        try {
+            Phonenumber.PhoneNumber parsed = mPhoneNumberUtil.parse(number, region);
+            entry = new Entry(parsed, mPhoneNumberUtil.isValidNumber(parsed),
+                    mPhoneNumberUtil.format(parsed, PhoneNumberUtil.PhoneNumberFormat.E164),
+                    mPhoneNumberUtil.getRegionCodeForNumber(parsed));
+        } catch (NumberParseException e) {
+            entry = new Entry(e);
+        }
+
+        synchronized (this) {
+            mEntries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Keeps the chars that matter to parsing: digits, letters (vanity numbers, extensions) and '+'.
+     */
+    private static String key(String number, String region) {
+        StringBuilder key = new StringBuilder(number.length() + 3);
+        key.append(region).append(':');
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '+') {
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("PhoneNumberCache[size=%d/%d, hits=%d, misses=%d, evictions=%d]",
+                mEntries.size(), mMaxSize, mHitCount, mMissCount, mEvictionCount);
+    }
+}
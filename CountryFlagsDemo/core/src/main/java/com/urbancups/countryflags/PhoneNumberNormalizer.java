@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns raw phone numbers, e.g. from an imported address book, into E.164 and their country.
+ * <p/>
+ * Batches are split into chunks run on an {@link ExecutorService}, a plain thread pool by default
+ * so that it also runs on Android versions without <code>ForkJoinPool</code> (API 21). Every
+ * thread parses into its own reused
+ * {@link Phonenumber.PhoneNumber} and buffer, so a batch allocates little more than its results.
+ * Numbers that can't be parsed don't fail the batch, their {@link Result} holds the error instead.
+ * <p/>
+ * Instances are thread-safe.
+ */
+public final class PhoneNumberNormalizer {
+
+    /**
+     * Numbers normalized by one task.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private static ExecutorService sDefaultPool;
+
+    /**
+     * Result of normalizing one number.
+     */
+    public static final class Result {
+
+        private final String mInput;
+        private final String mE164;
+        private final Country mCountry;
+        private final NumberParseException mError;
+
+        Result(String input, String e164, Country country, NumberParseException error) {
+            mInput = input;
+            mE164 = e164;
+            mCountry = country;
+            mError = error;
+        }
+
+        /**
+         * @return the number as it was given
+         */
+        public String getInput() {
+            return mInput;
+        }
+
+        /**
+         * @return the number in E.164, e.g. "+447400123456", or null if it couldn't be parsed
+         */
+        public String getE164() {
+            return mE164;
+        }
+
+        /**
+         * @return the country of the number, or null if it couldn't be parsed or its dial code
+         * belongs to no country
+         */
+        public Country getCountry() {
+            return mCountry;
+        }
+
+        /**
+         * @return why the number couldn't be parsed, or null if it was
+         */
+        public NumberParseException getError() {
+            return mError;
+        }
+
+        public boolean isSuccess() {
+            return mError == null;
+        }
+    }
+
+    /**
+     * Parsing state reused by every number normalized on a thread.
+     */
+    private static final class ParseState {
+
+        final Phonenumber.PhoneNumber mNumber = new Phonenumber.PhoneNumber();
+        final StringBuilder mFormatted = new StringBuilder(16);
+    }
+
+    private final PhoneNumberUtil mPhoneNumberUtil = PhoneNumberUtil.getInstance();
+    private final CountryRegistry mRegistry = CountryRegistry.getInstance();
+    private final String mDefaultRegion;
+    private final ExecutorService mPool;
+
+    private final ThreadLocal<ParseState> mParseState = new ThreadLocal<ParseState>() {
+        @Override
+        protected ParseState initialValue() {
+            return new ParseState();
+        }
+    };
+
+    /**
+     * Creates a normalizer running batches on a pool shared by all normalizers, with one thread
+     * per CPU.
+     *
+     * @param defaultRegion the region of numbers written without a '+' and country code, e.g. "US"
+     */
+    public PhoneNumberNormalizer(String defaultRegion) {
+        this(defaultRegion, getDefaultPool());
+    }
+
+    /**
+     * @param defaultRegion the region of numbers written without a '+' and country code, e.g. "US"
+     * @param pool          the pool to run batches on, e.g. a <code>ForkJoinPool</code> on the JVM.
+     *                      {@link #normalizeAll(Iterable)} must not be called from its threads.
+     */
+    public PhoneNumberNormalizer(String defaultRegion, ExecutorService pool) {
+        if (pool == null) throw new IllegalArgumentException();
+        mDefaultRegion = defaultRegion;
+        mPool = pool;
+    }
+
+    private static synchronized ExecutorService getDefaultPool() {
+        if (sDefaultPool == null) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "PhoneNumberNormalizer");
+                            // idle threads don't keep the process alive
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            sDefaultPool = pool;
+        }
+        return sDefaultPool;
+    }
+
+    /**
+     * Normalizes one number on the calling thread.
+     */
+    public Result normalize(String number) {
+        ParseState state = mParseState.get();
+        Phonenumber.PhoneNumber parsed = state.mNumber;
+        parsed.clear();
+        try {
+            mPhoneNumberUtil.parse(number, mDefaultRegion, parsed);
+        } catch (NumberParseException e) {
+            return new Result(number, null, null, e);
+        }
+
+        StringBuilder formatted = state.mFormatted;
+        formatted.setLength(0);
+        mPhoneNumberUtil.format(parsed, PhoneNumberUtil.PhoneNumberFormat.E164, formatted);
+
+        // the region decides between countries sharing a dial code, e.g. +1 for the US and Canada
+        Country country = mRegistry.getCountryForRegion(mPhoneNumberUtil.getRegionCodeForNumber(parsed));
+        if (country == null) {
+            country = mRegistry.getDefaultCountryForCode(parsed.getCountryCode());
+        }
+        return new Result(number, formatted.toString(), country, null);
+    }
+
+    /**
+     * Normalizes all <code>numbers</code> on the pool, blocking until all are done.
+     *
+     * @return one result per number, in the order of <code>numbers</code>
+     */
+    public List<Result> normalizeAll(Iterable<String> numbers) {
+        List<String> list;
+        if (numbers instanceof List && numbers instanceof RandomAccess) {
+            list = (List<String>) numbers;
+        } else {
+            list = new ArrayList<>();
+            for (String number : numbers) {
+                list.add(number);
+            }
+        }
+        Result[] results = new Result[list.size()];
+        // the first chunk runs on the calling thread, the others on the pool
+        List<Future<Void>> futures = new ArrayList<>();
+        boolean done = false;
+        try {
+            for (int from = BATCH_SIZE; from < results.length; from += BATCH_SIZE) {
+                futures.add(mPool.submit(new NormalizeTask(list, results, from, Math.min(from + BATCH_SIZE, results.length))));
+            }
+            new NormalizeTask(list, results, 0, Math.min(BATCH_SIZE, results.length)).call();
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).get();
+            }
+            done = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while normalizing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (!done) {
+                // whatever failed, the other chunks aren't needed anymore
+                cancel(futures);
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    private static void cancel(List<Future<Void>> futures) {
+        for (int i = 0; i < futures.size(); i++) {
+            futures.get(i).cancel(false);
+        }
+    }
+
+    private final class NormalizeTask implements Callable<Void> {
+
+        private final List<String> mNumbers;
+        private final Result[] mResults;
+        private final int mFrom;
+        private final int mTo;
+
+        NormalizeTask(List<String> numbers, Result[] results, int from, int to) {
+            mNumbers = numbers;
+            mResults = results;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        public Void call() {
+            for (int i = mFrom; i < mTo; i++) {
+                mResults[i] = normalize(mNumbers.get(i));
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+
+/**
+ * Parsing and validation of phone numbers, the part of the component that doesn't need a device.
+ * Results come from the shared {@link PhoneNumberCache}.
+ */
+public final class PhoneNumbers {
+
+    private PhoneNumbers() {
+    }
+
+    /**
+     * Checks that <code>number</code> can be parsed as a number of <code>region</code>, as
+     * <code>PhoneCountryFlagsComponent.validateNumber()</code> does. An empty number passes.
+     *
+     * @param region the region to parse national numbers with, e.g. "US"
+     * @throws NumberParseException if the number isn't in an acceptable format for the region
+     */
+    public static void validate(String number, String region) throws NumberParseException {
+        validate(number, region, null);
+    }
+
+    /**
+     * Like {@link #validate(String, String)}, and also rejects numbers whose calling code belongs
+     * to no region of <code>allowlist</code>.
+     *
+     * @param allowlist the regions to accept, or null for all of them
+     */
+    public static void validate(String number, String region, RegionAllowlist allowlist)
+            throws NumberParseException {
+        if (number == null || number.length() == 0) {
+            return;
+        }
+        PhoneNumberCache cache = allowlist == null ? PhoneNumberCache.getInstance() : allowlist.getPhoneNumberCache();
+        PhoneNumberCache.Entry entry = cache.get(number, region);
+        NumberParseException error = entry.getError();
+        if (error != null) {
+            throw error;
+        }
+        if (allowlist != null && !allowlist.containsCountryCode(entry.getCountryCode())) {
+            throw new NumberParseException(NumberParseException.ErrorType.INVALID_COUNTRY_CODE,
+                    "Country calling code isn't one of " + allowlist.getRegions());
+        }
+    }
+
+    /**
+     * @return the region of an international number, e.g. "GB" for "+44 7400 123456", or null if
+     * the number can't be parsed or its region is unknown
+     */
+    public static String getRegionForNumber(String number) {
+        if (number == null) {
+            return null;
+        }
+        return PhoneNumberCache.getInstance().get(number, null).getRegionCode();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+/**
+ * The steps a keystroke takes through the phone field besides formatting: the input filter and
+ * writing the formatted number back with the cursor kept in place. They run on every keystroke,
+ * so none of them allocate.
+ */
+public final class PhoneTextEdits {
+
+    /**
+     * The phone field as {@link #writeBack(Field, CharSequence)} edits it, e.g. an Android
+     * <code>Editable</code> and its selection.
+     */
+    public interface Field {
+
+        CharSequence getText();
+
+        /**
+         * @return the cursor, or -1 if there is none
+         */
+        int getSelectionEnd();
+
+        /**
+         * Replaces <code>[start, end)</code> of the text with
+         * <code>source[sourceStart, sourceEnd)</code>.
+         */
+        void replace(int start, int end, CharSequence source, int sourceStart, int sourceEnd);
+
+        void setSelection(int position);
+    }
+
+    private PhoneTextEdits() {
+    }
+
+    /**
+     * Replaces the text of <code>field</code> with <code>formatted</code>, touching only the range
+     * that differs. The cursor stays behind the same dialable char it was behind before, or at the
+     * end if it was at the end.
+     *
+     * @return whether the text changed
+     */
+    public static boolean writeBack(Field field, CharSequence formatted) {
+        CharSequence text = field.getText();
+        int oldLength = text.length();
+        int newLength = formatted.length();
+
+        int start = commonPrefix(text, formatted);
+        int suffix = commonSuffix(text, formatted, start);
+        int oldEnd = oldLength - suffix;
+        int newEnd = newLength - suffix;
+        if (start == oldEnd && start == newEnd) {
+            return false;
+        }
+
+        int cursor = field.getSelectionEnd();
+        int dialableBeforeCursor = cursor < 0 || cursor >= oldLength ? -1 : countDialable(text, cursor);
+
+        field.replace(start, oldEnd, formatted, start, newEnd);
+
+        text = field.getText();
+        field.setSelection(dialableBeforeCursor < 0 ? text.length() : positionAfterDialable(text, dialableBeforeCursor));
+        return true;
+    }
+
+    /**
+     * The input filter of the phone field: digits only, and no leading zero.
+     *
+     * @param source the typed or pasted text, <code>source[start..end)</code> is inserted
+     * @param dstart where it is inserted
+     */
+    public static boolean accepts(CharSequence source, int start, int end, int dstart) {
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (dstart == 0 && c == '0') {
+                return false;
+            }
+            if (!Character.isDigit(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the length of the common prefix of <code>a</code> and <code>b</code>
+     */
+    public static int commonPrefix(CharSequence a, CharSequence b) {
+        int limit = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < limit && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the length of the common suffix of <code>a</code> and <code>b</code> that does not
+     * overlap their first <code>prefix</code> chars
+     */
+    public static int commonSuffix(CharSequence a, CharSequence b, int prefix) {
+        int i = a.length();
+        int j = b.length();
+        while (i > prefix && j > prefix && a.charAt(i - 1) == b.charAt(j - 1)) {
+            i--;
+            j--;
+        }
+        return a.length() - i;
+    }
+
+    /**
+     * @return the number of dialable chars of <code>s[0..end)</code>
+     */
+    public static int countDialable(CharSequence s, int end) {
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (IncrementalAsYouTypeFormatter.isNonSeparator(s.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the position right after the <code>count</code>th dialable char of <code>s</code>,
+     * or its length if it has fewer
+     */
+    public static int positionAfterDialable(CharSequence s, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            if (IncrementalAsYouTypeFormatter.isNonSeparator(s.charAt(i)) && --count == 0) {
+                return i + 1;
+            }
+        }
+        return len;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.MetadataLoader;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.nano.Phonemetadata;
+import com.google.protobuf.nano.MessageNano;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The regions a component is limited to, e.g. "US", "CA" and "GB".
+ * <p/>
+ * Only those regions are listed (see {@link CountryNames#getInstance(Locale, RegionAllowlist)}),
+ * and {@link #getPhoneNumberUtil()} loads libphonenumber metadata only for them. Every other region
+ * gets an empty stand-in, so its numbers still parse but are never valid or formatted, and its
+ * real metadata is never read.
+ * <p/>
+ * Instances are cached by their set of regions, so components configured alike share the
+ * metadata and the sorted names.
+ */
+public final class RegionAllowlist {
+
+    /**
+     * Calling codes have at most three digits.
+     */
+    private static final int MAX_COUNTRY_CODE = 999;
+
+    private static final ConcurrentHashMap<Set<String>, RegionAllowlist> sCache = new ConcurrentHashMap<>();
+
+    private final Set<String> mRegions;
+    private volatile PhoneNumberUtil mPhoneNumberUtil;
+    private volatile PhoneNumberCache mPhoneNumberCache;
+
+    /**
+     * Names of the allowed countries by locale, see {@link CountryNames}.
+     */
+    final ConcurrentHashMap<Locale, CountryNames> mNames = new ConcurrentHashMap<>();
+
+    private RegionAllowlist(Set<String> regions) {
+        mRegions = regions;
+    }
+
+    /**
+     * @param regions ISO 3166-1 region codes, in any case
+     */
+    public static RegionAllowlist of(Collection<String> regions) {
+        Set<String> set = new TreeSet<>();
+        for (String region : regions) {
+            set.add(region.trim().toUpperCase(Locale.US));
+        }
+        if (set.isEmpty()) throw new IllegalArgumentException("no regions");
+        set = Collections.unmodifiableSet(set);
+
+        RegionAllowlist allowlist = sCache.get(set);
+        if (allowlist == null) {
+            allowlist = new RegionAllowlist(set);
+            RegionAllowlist previous = sCache.putIfAbsent(set, allowlist);
+            if (previous != null) {
+                allowlist = previous;
+            }
+        }
+        return allowlist;
+    }
+
+    /**
+     * @param regions region codes separated by commas or spaces, e.g. "US, CA, GB"
+     */
+    public static RegionAllowlist parse(String regions) {
+        Set<String> set = new TreeSet<>();
+        for (String region : regions.split("[,\\s]+")) {
+            if (!region.isEmpty()) {
+                set.add(region);
+            }
+        }
+        return of(set);
+    }
+
+    /**
+     * @return the upper-case region codes, sorted
+     */
+    public Set<String> getRegions() {
+        return mRegions;
+    }
+
+    public boolean contains(String region) {
+        return region != null && mRegions.contains(region.toUpperCase(Locale.US));
+    }
+
+    public boolean contains(Country country) {
+        return contains(country.getCountryISO());
+    }
+
+    /**
+     * Returns the libphonenumber instance for these regions, creating it the first time. Metadata
+     * is read lazily, region by region, as usual.
+     */
+    public PhoneNumberUtil getPhoneNumberUtil() {
+        PhoneNumberUtil util = mPhoneNumberUtil;
+        if (util == null) {
+            synchronized (this) {
+                util = mPhoneNumberUtil;
+                if (util == null) {
+                    util = PhoneNumberUtil.createInstance(new AllowlistMetadataLoader());
+                    mPhoneNumberUtil = util;
+                }
+            }
+        }
+        return util;
+    }
+
+    /**
+     * @return the cache of numbers parsed with {@link #getPhoneNumberUtil()}
+     */
+    public PhoneNumberCache getPhoneNumberCache() {
+        PhoneNumberCache cache = mPhoneNumberCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = mPhoneNumberCache;
+                if (cache == null) {
+                    cache = new PhoneNumberCache(PhoneNumberCache.DEFAULT_MAX_SIZE, getPhoneNumberUtil());
+                    mPhoneNumberCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * @return whether <code>countryCode</code>, e.g. 1, is the calling code of an allowed region
+     */
+    public boolean containsCountryCode(int countryCode) {
+        List<String> regions = getPhoneNumberUtil().getRegionCodesForCountryCode(countryCode);
+        for (int i = 0; i < regions.size(); i++) {
+            if (mRegions.contains(regions.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "RegionAllowlist" + mRegions;
+    }
+
+    /**
+     * Calling codes by region, inverted once from the calling code to regions map libphonenumber
+     * keeps in code rather than in the metadata files.
+     */
+    private static final class CallingCodes {
+
+        static final HashMap<String, Integer> BY_REGION = new HashMap<>();
+
+        static {
+            PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+            for (int code = 1; code <= MAX_COUNTRY_CODE; code++) {
+                List<String> regions = util.getRegionCodesForCountryCode(code);
+                for (int i = 0; i < regions.size(); i++) {
+                    BY_REGION.put(regions.get(i), code);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the bundled metadata files of the allowed regions and makes up the others. libphonenumber
+     * asks for "/com/google/i18n/phonenumbers/data/PhoneNumberMetadataProto_US" for the US, and
+     * "..._800" for the non-geographical calling code 800.
+     */
+    private final class AllowlistMetadataLoader implements MetadataLoader {
+
+        @Override
+        public InputStream loadMetadata(String metadataFileName) {
+            String region = metadataFileName.substring(metadataFileName.lastIndexOf('_') + 1);
+            if (mRegions.contains(region)) {
+                return PhoneNumberUtil.class.getResourceAsStream(metadataFileName);
+            }
+            Phonemetadata.PhoneMetadata metadata = emptyMetadata(region);
+            return metadata == null ? null : new ByteArrayInputStream(serialize(metadata));
+        }
+
+        /**
+         * @return metadata matching no number, but with the calling code libphonenumber needs to
+         * parse numbers of <code>region</code>, or null if <code>region</code> isn't known
+         */
+        private Phonemetadata.PhoneMetadata emptyMetadata(String region) {
+            Phonemetadata.PhoneMetadata metadata = new Phonemetadata.PhoneMetadata();
+            if (Character.isDigit(region.charAt(0))) {
+                metadata.id = "001";
+                metadata.countryCode = Integer.parseInt(region);
+            } else {
+                metadata.id = region;
+                metadata.countryCode = countryCodeForRegion(region);
+                if (metadata.countryCode == 0) {
+                    return null;
+                }
+            }
+            metadata.generalDesc = noNumbers();
+            metadata.fixedLine = noNumbers();
+            metadata.mobile = noNumbers();
+            metadata.tollFree = noNumbers();
+            metadata.premiumRate = noNumbers();
+            metadata.sharedCost = noNumbers();
+            metadata.personalNumber = noNumbers();
+            metadata.voip = noNumbers();
+            metadata.pager = noNumbers();
+            metadata.uan = noNumbers();
+            metadata.emergency = noNumbers();
+            metadata.voicemail = noNumbers();
+            metadata.shortCode = noNumbers();
+            metadata.standardRate = noNumbers();
+            metadata.carrierSpecific = noNumbers();
+            metadata.noInternationalDialling = noNumbers();
+            return metadata;
+        }
+
+        private int countryCodeForRegion(String region) {
+            Integer code = CallingCodes.BY_REGION.get(region);
+            return code == null ? 0 : code;
+        }
+
+        private Phonemetadata.PhoneNumberDesc noNumbers() {
+            Phonemetadata.PhoneNumberDesc desc = new Phonemetadata.PhoneNumberDesc();
+            desc.nationalNumberPattern = "NA";
+            desc.possibleNumberPattern = "NA";
+            return desc;
+        }
+
+        /**
+         * Writes <code>metadata</code> the way the bundled files are written, a collection in the
+         * block data of an object stream. This is the format of libphonenumber 7.2.
+         */
+        private byte[] serialize(Phonemetadata.PhoneMetadata metadata) {
+            Phonemetadata.PhoneMetadataCollection collection = new Phonemetadata.PhoneMetadataCollection();
+            collection.metadata = new Phonemetadata.PhoneMetadata[]{metadata};
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(bytes);
+                out.write(MessageNano.toByteArray(collection));
+                out.close();
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                // a ByteArrayOutputStream doesn't throw
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
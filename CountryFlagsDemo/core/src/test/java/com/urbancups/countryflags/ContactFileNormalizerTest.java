@@ -0,0 +1,76 @@
+package com.urbancups.countryflags;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContactFileNormalizerTest {
+
+    private final ContactFileNormalizer mNormalizer = new ContactFileNormalizer(new PhoneNumberNormalizer("US"));
+
+    private String normalize(String input, ContactFileNormalizer.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mNormalizer.normalize(Channels.newChannel(new ByteArrayInputStream(input.getBytes("UTF-8"))), format,
+                Channels.newChannel(out));
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void readsPhoneColumnsOfCsv() throws IOException {
+        String csv = "Name,Mobile Phone,Email\r\n"
+                + "\"Doe, Jane\",(650) 253-0000,jane@example.com\r\n"
+                + "\"Quote \"\"Q\"\"\",+44 7400 123456,\n"
+                + "Nobody,,\n"
+                + "Broken,hello,";
+        assertEquals("number,e164,country,error\n"
+                + "(650) 253-0000,+16502530000,us,\n"
+                + "+44 7400 123456,+447400123456,gb,\n"
+                + "hello,,,NOT_A_NUMBER\n", normalize(csv, ContactFileNormalizer.Format.CSV));
+    }
+
+    @Test
+    public void readsFirstColumnOfCsvWithoutHeader() throws IOException {
+        assertEquals("number,e164,country,error\n"
+                + "6502530000,+16502530000,us,\n"
+                + "\"+1 204 555 0123, ext\",,,NOT_A_NUMBER\n"
+                + "+1 204 555 0123,+12045550123,ca,\n",
+                normalize("6502530000,a\n\"+1 204 555 0123, ext\"\n\"+1 204 555 0123\",b\n", ContactFileNormalizer.Format.CSV));
+    }
+
+    @Test
+    public void readsTelPropertiesOfVCard() throws IOException {
+        String vcard = "BEGIN:VCARD\r\n"
+                + "VERSION:3.0\r\n"
+                + "FN:Jane Doe\r\n"
+                + "TEL;TYPE=CELL:(650) 253-\r\n"
+                + " 0000\r\n"
+                + "item1.TEL:+44 7400 123456\r\n"
+                + "NOTE:TEL:+1 555\r\n"
+                + "END:VCARD\r\n"
+                + "BEGIN:VCARD\n"
+                + "VERSION:4.0\n"
+                + "TEL;VALUE=uri;TYPE=home:tel:+1-204-555-0123\n"
+                + "END:VCARD\n";
+        assertEquals("number,e164,country,error\n"
+                + "(650) 253-0000,+16502530000,us,\n"
+                + "+44 7400 123456,+447400123456,gb,\n"
+                + "+1-204-555-0123,+12045550123,ca,\n", normalize(vcard, ContactFileNormalizer.Format.VCARD));
+    }
+
+    @Test
+    public void keepsOrderOverManyBatches() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        StringBuilder expected = new StringBuilder("number,e164,country,error\n");
+        for (int i = 0; i < ContactFileNormalizer.BATCH_SIZE * (ContactFileNormalizer.QUEUED_BATCHES + 3); i++) {
+            String number = String.format("650%07d", i);
+            csv.append(number).append('\n');
+            expected.append(number).append(",+1").append(number).append(",us,\n");
+        }
+        assertEquals(expected.toString(), normalize(csv.toString(), ContactFileNormalizer.Format.CSV));
+    }
+}
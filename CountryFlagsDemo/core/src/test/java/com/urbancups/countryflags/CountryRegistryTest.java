@@ -0,0 +1,97 @@
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.AsYouTypeFormatter;
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Detection, formatting and validation on the plain JVM.
+ */
+public class CountryRegistryTest {
+
+    private final CountryRegistry mRegistry = CountryRegistry.getInstance();
+
+    private Country country(String iso) {
+        for (Country country : mRegistry.getCountries()) {
+            if (country.getCountryISO().equals(iso)) {
+                return country;
+            }
+        }
+        throw new AssertionError(iso);
+    }
+
+    @Test
+    public void detectsCountryByDialCode() {
+        assertEquals(country("gb"), mRegistry.detectCountry("+447400", null));
+        assertEquals(country("us"), mRegistry.detectCountry("+1", null));
+        assertEquals(country("ca"), mRegistry.detectCountry("+1204", null));
+        assertNull(mRegistry.detectCountry("+44", country("gb")));
+    }
+
+    @Test
+    public void detectsCountryByNationalDigits() {
+        assertEquals(country("ca"), mRegistry.detectCountry("2045551234", country("us")));
+        assertEquals(country("do"), mRegistry.detectCountry("809", country("us")));
+        assertNull(mRegistry.detectCountry("212", country("us")));
+        assertNull(mRegistry.detectCountry("212", null));
+    }
+
+    @Test
+    public void formatsLikeAsYouTypeFormatter() {
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        IncrementalAsYouTypeFormatter formatter = new IncrementalAsYouTypeFormatter(util.getAsYouTypeFormatter("US"));
+        // typing, deleting from the end, retyping, and editing in the middle
+        String[] inputs = {"6", "65", "650", "6502", "650253", "6502530000", "650253", "650-25", "6502530000",
+                "6592530000"};
+        for (String input : inputs) {
+            assertEquals(input, replay(util.getAsYouTypeFormatter("US"), input), formatter.format(input));
+        }
+    }
+
+    private static String replay(AsYouTypeFormatter formatter, String input) {
+        String formatted = "";
+        for (int i = 0; i < input.length(); i++) {
+            if (IncrementalAsYouTypeFormatter.isNonSeparator(input.charAt(i))) {
+                formatted = formatter.inputDigit(input.charAt(i));
+            }
+        }
+        return formatted;
+    }
+
+    @Test
+    public void validatesNumbers() throws NumberParseException {
+        PhoneNumbers.validate("", "US");
+        PhoneNumbers.validate("650 253 0000", "US");
+        assertEquals("GB", PhoneNumbers.getRegionForNumber("+44 7400 123456"));
+        assertNull(PhoneNumbers.getRegionForNumber("not a number"));
+    }
+
+    @Test(expected = NumberParseException.class)
+    public void rejectsNumbersNotInRegionFormat() throws NumberParseException {
+        PhoneNumbers.validate("1", "US");
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void parsesCountriesTheOldWay() {
+        Country country = new Country(null, "Canada,ca,1,1", 38);
+        assertEquals("ca", country.getCountryISO());
+        assertEquals("+1", country.getCountryCodeStr());
+        assertEquals(1, country.getPriority());
+        // no flags until the Android library registers them
+        assertEquals(0, country.getResId());
+        int[] resIds = new int[39];
+        resIds[38] = 0x7f020026;
+        Country.setFlagResIds(resIds);
+        try {
+            assertEquals(0x7f020026, country.getResId());
+        } finally {
+            Country.setFlagResIds(new int[0]);
+        }
+    }
+}
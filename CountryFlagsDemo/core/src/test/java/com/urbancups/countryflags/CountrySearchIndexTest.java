@@ -0,0 +1,82 @@
+package com.urbancups.countryflags;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Searches over English and localized names tables.
+ */
+public class CountrySearchIndexTest {
+
+    private final List<Country> mCountries = CountryRegistry.getInstance().getCountries();
+
+    @Test
+    public void matchesEveryWordOfMultiWordQueries() {
+        CountrySearchIndex index = index(new HashMap<String, String>());
+        assertEquals(Arrays.asList("nz"), search(index, "new z"));
+        assertEquals(Arrays.asList("nz"), search(index, "z  New "));
+        assertEquals(Arrays.asList("us", "vi"), search(index, "u s"));
+        assertEquals(Arrays.asList("ae", "gb", "us"), search(index, "united"));
+    }
+
+    @Test
+    public void searchesCyrillicNames() {
+        Map<String, String> names = new HashMap<>();
+        names.put("de", "Германия");
+        names.put("gr", "Греция");
+        names.put("ge", "Грузия");
+        names.put("gh", "Гана");
+        names.put("nz", "Новая Зеландия");
+        CountrySearchIndex index = index(names);
+        assertEquals(Arrays.asList("de", "ge", "gh", "gr"), search(index, "Г"));
+        assertEquals(Arrays.asList("de"), search(index, "Ге"));
+        assertEquals(Arrays.asList("ge", "gr"), search(index, "гр"));
+        assertEquals(Arrays.asList("nz"), search(index, "нов з"));
+    }
+
+    @Test
+    public void searchesCjkNames() {
+        Map<String, String> names = new HashMap<>();
+        names.put("jp", "日本");
+        names.put("cn", "中国");
+        CountrySearchIndex index = index(names);
+        assertEquals(Arrays.asList("jp"), search(index, "日"));
+        assertEquals(Arrays.asList("cn"), search(index, "中国"));
+        assertEquals(new ArrayList<String>(), search(index, "日国"));
+    }
+
+    /**
+     * Indexes all countries, named by <code>names</code> where it has them and by their English
+     * name otherwise.
+     */
+    private CountrySearchIndex index(Map<String, String> names) {
+        List<String> list = new ArrayList<>();
+        for (Country country : mCountries) {
+            String name = names.get(country.getCountryISO());
+            list.add(name != null ? name : country.getName());
+        }
+        return new CountrySearchIndex(mCountries, list);
+    }
+
+    /**
+     * @return the ISO codes of the matches, sorted
+     */
+    private static List<String> search(CountrySearchIndex index, String query) {
+        int[] results = new int[index.size()];
+        int count = index.search(query, results);
+        List<String> isos = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            isos.add(index.getCountry(results[i]).getCountryISO());
+        }
+        Collections.sort(isos);
+        return isos;
+    }
+}
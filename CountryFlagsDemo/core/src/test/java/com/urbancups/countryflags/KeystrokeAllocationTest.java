@@ -0,0 +1,213 @@
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.AsYouTypeFormatter;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Counts the bytes a keystroke allocates on the JVM, to catch allocations creeping back into the
+ * typing path. A keystroke is simulated the way the component handles it: the input filter, the
+ * edit, formatting, writing the formatted number back with {@link PhoneTextEdits#writeBack}, and
+ * detection.
+ * <p/>
+ * Only {@link AsYouTypeFormatter#inputDigit(char)} may allocate, when it is fed a digit it has not
+ * seen: its output is a new string. Its bytes are counted apart and excluded. Everything else,
+ * and every keystroke that is answered from the formatter's checkpoints, must allocate nothing.
+ * Skipped on JVMs that can't count allocated bytes per thread.
+ */
+public class KeystrokeAllocationTest {
+
+    /**
+     * Bytes a keystroke may allocate besides the formatter's output. Raise only with a reason.
+     */
+    private static final long ALLOWED_BYTES_PER_KEYSTROKE = 0;
+
+    private static final String NUMBER = "4155552671";
+    private static final int ROUNDS = 200;
+
+    private static final String[] KEYS = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+
+    private com.sun.management.ThreadMXBean mThreads;
+    private long mThreadId;
+    private long mOverhead;
+
+    private final CountryRegistry mRegistry = CountryRegistry.getInstance();
+    private final Country mSelected = mRegistry.getDefaultCountryForCode(1);
+
+    /**
+     * The phone field: its text and cursor.
+     */
+    private final StringBuilder mText = new StringBuilder(64);
+    private int mCursor;
+    private IncrementalAsYouTypeFormatter mFormatter;
+
+    private final PhoneTextEdits.Field mField = new PhoneTextEdits.Field() {
+        @Override
+        public CharSequence getText() {
+            return mText;
+        }
+
+        @Override
+        public int getSelectionEnd() {
+            return mCursor;
+        }
+
+        @Override
+        public void replace(int start, int end, CharSequence source, int sourceStart, int sourceEnd) {
+            mText.delete(start, end);
+            mText.insert(start, source, sourceStart, sourceEnd);
+        }
+
+        @Override
+        public void setSelection(int position) {
+            mCursor = position;
+        }
+    };
+
+    /**
+     * Bytes allocated by the simulated keystrokes, without those of {@link #mInputDigitBytes}.
+     */
+    private long mAllocated;
+
+    /**
+     * Bytes allocated by {@link AsYouTypeFormatter#inputDigit(char)}, counter overhead included.
+     */
+    private long mInputDigitBytes;
+
+    @Before
+    public void setUp() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        mThreads = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(mThreads.isThreadAllocatedMemorySupported());
+        mThreads.setThreadAllocatedMemoryEnabled(true);
+        mThreadId = Thread.currentThread().getId();
+
+        // what reading the counter costs, so it can be subtracted
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long start = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - start);
+        }
+        mOverhead = overhead;
+
+        final AsYouTypeFormatter formatter = PhoneNumberUtil.getInstance().getAsYouTypeFormatter("US");
+        mFormatter = new IncrementalAsYouTypeFormatter(new IncrementalAsYouTypeFormatter.DigitFormatter() {
+            @Override
+            public String inputDigit(char c) {
+                long start = allocatedBytes();
+                String formatted = formatter.inputDigit(c);
+                mInputDigitBytes += allocatedBytes() - start;
+                return formatted;
+            }
+
+            @Override
+            public void clear() {
+                formatter.clear();
+            }
+        });
+        // warm up: load classes and let the JIT settle before counting
+        for (int i = 0; i < ROUNDS; i++) {
+            clearField();
+            typeNumber();
+            backspaceAndRetype(NUMBER.length());
+        }
+        clearField();
+    }
+
+    @Test
+    public void typingAllocatesOnlyFormatterOutput() {
+        mAllocated = 0;
+        mInputDigitBytes = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            clearField();
+            typeNumber();
+        }
+        assertEquals(ALLOWED_BYTES_PER_KEYSTROKE * ROUNDS * NUMBER.length(), mAllocated - mInputDigitBytes);
+    }
+
+    @Test
+    public void editingTypedDigitsAllocatesNothing() {
+        typeNumber();
+        long start = allocatedBytes();
+        for (int i = 0; i < ROUNDS; i++) {
+            backspaceAndRetype(NUMBER.length());
+        }
+        long allocated = allocatedBytes() - start - mOverhead;
+        assertEquals(0, allocated);
+        assertEquals("(415) 555-2671", mText.toString());
+    }
+
+    @Test
+    public void rejectedKeysAllocateNothing() {
+        long start = allocatedBytes();
+        for (int i = 0; i < ROUNDS; i++) {
+            // a leading zero, and a separator
+            PhoneTextEdits.accepts(KEYS[0], 0, 1, 0);
+            PhoneTextEdits.accepts("-", 0, 1, 3);
+        }
+        assertEquals(0, allocatedBytes() - start - mOverhead);
+    }
+
+    private long allocatedBytes() {
+        return mThreads.getThreadAllocatedBytes(mThreadId);
+    }
+
+    private void clearField() {
+        mText.setLength(0);
+        mCursor = 0;
+        mFormatter.clear();
+    }
+
+    private void typeNumber() {
+        for (int i = 0; i < NUMBER.length(); i++) {
+            type(NUMBER.charAt(i));
+        }
+    }
+
+    private void backspaceAndRetype(int count) {
+        for (int i = 0; i < count; i++) {
+            backspace();
+        }
+        for (int i = NUMBER.length() - count; i < NUMBER.length(); i++) {
+            type(NUMBER.charAt(i));
+        }
+    }
+
+    private void type(char c) {
+        long start = allocatedBytes();
+        String key = KEYS[c - '0'];
+        if (PhoneTextEdits.accepts(key, 0, 1, mCursor)) {
+            mText.insert(mCursor++, c);
+            writeBack(mFormatter.format(mText));
+        }
+        mAllocated += allocatedBytes() - start - mOverhead;
+    }
+
+    private void backspace() {
+        // the separators the formatter inserted are deleted along with the digit before them
+        while (mCursor > 0 && !IncrementalAsYouTypeFormatter.isNonSeparator(mText.charAt(mCursor - 1))) {
+            mText.deleteCharAt(--mCursor);
+        }
+        if (mCursor > 0) {
+            mText.deleteCharAt(--mCursor);
+        }
+        writeBack(mFormatter.format(mText));
+    }
+
+    /**
+     * What the component does with a formatted number: writes it back and detects the country.
+     */
+    private void writeBack(String formatted) {
+        PhoneTextEdits.writeBack(mField, formatted);
+        mRegistry.detectCountry(formatted, mSelected);
+    }
+}
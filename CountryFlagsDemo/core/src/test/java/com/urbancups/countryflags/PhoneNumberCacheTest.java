@@ -0,0 +1,59 @@
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PhoneNumberCacheTest {
+
+    private final PhoneNumberCache mCache = new PhoneNumberCache(2);
+
+    @Test
+    public void sharesEntryAcrossSeparators() {
+        PhoneNumberCache.Entry entry = mCache.get("(650) 253-0000", "US");
+        assertTrue(entry.isParsed());
+        assertTrue(entry.isValid());
+        assertEquals("+16502530000", entry.getE164());
+        assertEquals("US", entry.getRegionCode());
+
+        assertSame(entry, mCache.get("650 253 0000", "US"));
+        assertEquals(1, mCache.getMissCount());
+        assertEquals(1, mCache.getHitCount());
+
+        // same digits, different region
+        assertNotSame(entry, mCache.get("650 253 0000", "CA"));
+        assertEquals(2, mCache.getMissCount());
+    }
+
+    @Test
+    public void cachesErrors() {
+        PhoneNumberCache.Entry entry = mCache.get("hello", "US");
+        assertFalse(entry.isParsed());
+        assertNull(entry.getPhoneNumber());
+        assertEquals(NumberParseException.ErrorType.NOT_A_NUMBER, entry.getError().getErrorType());
+        assertNotSame(entry.getError(), entry.getError());
+
+        assertSame(entry, mCache.get("hello", "US"));
+        assertEquals(1, mCache.getHitCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        PhoneNumberCache.Entry first = mCache.get("+44 7400 123456", null);
+        mCache.get("+1 650 253 0000", null);
+        mCache.get("+447400123456", null);
+        mCache.get("+49 30 123456", null);
+
+        assertEquals(2, mCache.size());
+        assertEquals(1, mCache.getEvictionCount());
+        assertSame(first, mCache.get("+44 7400 123456", null));
+        assertEquals(2, mCache.getHitCount());
+    }
+}
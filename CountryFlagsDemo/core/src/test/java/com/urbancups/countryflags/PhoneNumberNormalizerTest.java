@@ -0,0 +1,121 @@
+package com.urbancups.countryflags;
+
+import org.junit.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PhoneNumberNormalizerTest {
+
+    private final PhoneNumberNormalizer mNormalizer = new PhoneNumberNormalizer("US");
+
+    @Test
+    public void normalizesToE164AndCountry() {
+        List<PhoneNumberNormalizer.Result> results = mNormalizer.normalizeAll(Arrays.asList(
+                "(650) 253-0000", "+44 7400 123456", "+1 204 555 0123", "hello", "1"));
+
+        assertEquals("+16502530000", results.get(0).getE164());
+        assertEquals("us", results.get(0).getCountry().getCountryISO());
+        assertEquals("+447400123456", results.get(1).getE164());
+        assertEquals("gb", results.get(1).getCountry().getCountryISO());
+        assertEquals("ca", results.get(2).getCountry().getCountryISO());
+
+        assertFalse(results.get(3).isSuccess());
+        assertNotNull(results.get(3).getError());
+        assertNull(results.get(3).getE164());
+        assertEquals("hello", results.get(3).getInput());
+        assertFalse(results.get(4).isSuccess());
+    }
+
+    @Test
+    public void keepsInputOrderAcrossTasks() {
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            numbers.add(String.format("650 %03d %04d", i % 1000, i));
+        }
+        List<PhoneNumberNormalizer.Result> results = mNormalizer.normalizeAll(numbers);
+
+        assertEquals(numbers.size(), results.size());
+        for (int i = 0; i < numbers.size(); i++) {
+            assertEquals(numbers.get(i), results.get(i).getInput());
+            assertEquals(String.format("+1650%03d%04d", i % 1000, i), results.get(i).getE164());
+        }
+    }
+
+    @Test
+    public void cancelsPoolChunksWhenCallerChunkFails() {
+        // a pool that keeps what it is given without running it
+        final List<Future<?>> submitted = new ArrayList<>();
+        AbstractExecutorService pool = new AbstractExecutorService() {
+            @Override
+            public void execute(Runnable command) {
+                submitted.add((FutureTask<?>) command);
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return false;
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return false;
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit) {
+                return true;
+            }
+        };
+        // the first number, normalized on the calling thread, can't be read
+        class FailingList extends AbstractList<String> implements RandomAccess {
+            @Override
+            public String get(int index) {
+                if (index == 0) {
+                    throw new IllegalStateException("unreadable");
+                }
+                return "650 253 0000";
+            }
+
+            @Override
+            public int size() {
+                return 1000;
+            }
+        }
+
+        try {
+            new PhoneNumberNormalizer("US", pool).normalizeAll(new FailingList());
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("unreadable", e.getMessage());
+        }
+        assertFalse(submitted.isEmpty());
+        for (Future<?> future : submitted) {
+            assertTrue(future.isCancelled());
+        }
+    }
+}
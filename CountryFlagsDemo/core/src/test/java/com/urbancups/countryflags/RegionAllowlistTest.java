@@ -0,0 +1,94 @@
+package com.urbancups.countryflags;
+
+import com.google.i18n.phonenumbers.AsYouTypeFormatter;
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RegionAllowlistTest {
+
+    private final RegionAllowlist mAllowlist = RegionAllowlist.parse("us, gb");
+
+    @Test
+    public void isCachedByRegions() {
+        assertSame(mAllowlist, RegionAllowlist.of(Arrays.asList("GB", "US")));
+        assertTrue(mAllowlist.contains("us"));
+        assertFalse(mAllowlist.contains("DE"));
+    }
+
+    @Test
+    public void listsOnlyAllowedCountries() {
+        CountryNames names = CountryNames.getInstance(Locale.ENGLISH, mAllowlist);
+        List<Country> countries = names.getSortedCountries();
+        assertEquals(2, countries.size());
+        assertEquals("gb", countries.get(0).getCountryISO());
+        assertEquals("us", countries.get(1).getCountryISO());
+        assertEquals(1, names.getPosition(countries.get(1)));
+
+        Country germany = CountryRegistry.getInstance().getCountryForRegion("DE");
+        assertEquals(-1, names.getPosition(germany));
+        assertSame(names, CountryNames.peek(Locale.ENGLISH, mAllowlist));
+    }
+
+    @Test
+    public void parsesOtherRegionsWithoutTheirMetadata() throws NumberParseException {
+        PhoneNumberUtil util = mAllowlist.getPhoneNumberUtil();
+
+        Phonenumber.PhoneNumber us = util.parse("(650) 253-0000", "US");
+        assertTrue(util.isValidNumber(us));
+        assertEquals("+1 650-253-0000", util.format(us, PhoneNumberUtil.PhoneNumberFormat.INTERNATIONAL));
+
+        Phonenumber.PhoneNumber de = util.parse("+49 30 123456", "US");
+        assertEquals(49, de.getCountryCode());
+        assertFalse(util.isValidNumber(de));
+        assertEquals("+4930123456", util.format(de, PhoneNumberUtil.PhoneNumberFormat.E164));
+
+        // national numbers of a region that isn't allowed
+        util.parse("030 123456", "DE");
+
+        AsYouTypeFormatter formatter = util.getAsYouTypeFormatter("US");
+        String formatted = null;
+        for (char c : "+4930123456".toCharArray()) {
+            formatted = formatter.inputDigit(c);
+        }
+        assertEquals("+4930123456", formatted.replace(" ", ""));
+    }
+
+    @Test
+    public void validatesOnlyAllowedCallingCodes() throws NumberParseException {
+        PhoneNumbers.validate("+44 7400 123456", "US", mAllowlist);
+        PhoneNumbers.validate("+49 30 123456", "US", null);
+        try {
+            PhoneNumbers.validate("+49 30 123456", "US", mAllowlist);
+            fail();
+        } catch (NumberParseException e) {
+            assertEquals(NumberParseException.ErrorType.INVALID_COUNTRY_CODE, e.getErrorType());
+        }
+    }
+
+    @Test
+    public void picksDefaultCountryOfRegionWithinAllowlist() {
+        CountryRegistry registry = CountryRegistry.getInstance();
+        RegionAllowlist canada = RegionAllowlist.parse("CA");
+
+        // not the main country of +1
+        assertEquals("ca", registry.getDefaultCountryForRegion("CA", canada).getCountryISO());
+        assertEquals("ca", registry.getDefaultCountryForRegion("ca", null).getCountryISO());
+        assertEquals("us", registry.getDefaultCountryForRegion("CA", RegionAllowlist.parse("US")).getCountryISO());
+        assertNull(registry.getDefaultCountryForRegion("DE", canada));
+        assertNull(registry.getDefaultCountryForRegion(null, canada));
+    }
+}
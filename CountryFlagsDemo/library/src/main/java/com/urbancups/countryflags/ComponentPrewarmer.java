@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Loads on a background thread everything a {@link PhoneCountryFlagsComponent} needs before it
+ * can show its first frame fully: libphonenumber and the metadata of the formatter's and the user's
+ * regions, the country table and its names in the component's locale, the user's region, the
+ * typeface and the flag atlas. See {@link PhoneCountryFlagsComponent#prewarm(Context)}.
+ * <p/>
+ * It warms the very instances components use: the {@link RegionAllowlist} of components limited to
+ * regions, and the locale {@link CountryLoader} loads for. It runs once per process and allowlist,
+ * later calls get the same future.
+ */
+final class ComponentPrewarmer {
+
+    /**
+     * Prewarms by allowlist, the null key for components listing all regions.
+     */
+    private static final HashMap<RegionAllowlist, ComponentPrewarmer> sPrewarmers = new HashMap<>();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final FutureTask<Void> mTask;
+
+    /**
+     * Listeners waiting for mTask, null once they were notified.
+     */
+    private ArrayList<PhoneCountryFlagsComponent.OnPrewarmedListener> mListeners = new ArrayList<>();
+
+    private ComponentPrewarmer(final Context context, final Locale locale, final RegionAllowlist allowlist) {
+        mTask = new FutureTask<Void>(new Callable<Void>() {
+            @Override
+            public Void call() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                load(context, locale, allowlist);
+                return null;
+            }
+        }) {
+            @Override
+            protected void done() {
+                notifyListeners();
+            }
+        };
+    }
+
+    /**
+     * @param allowlist the regions the components are limited to, or null for all of them
+     */
+    static Future<Void> prewarm(Context context, RegionAllowlist allowlist,
+                                PhoneCountryFlagsComponent.OnPrewarmedListener listener) {
+        // the locale of the caller's resources, as components read it
+        Locale locale = CountryLoader.getLocale(context);
+        ComponentPrewarmer prewarmer;
+        boolean start = false;
+        synchronized (ComponentPrewarmer.class) {
+            prewarmer = sPrewarmers.get(allowlist);
+            if (prewarmer == null) {
+                prewarmer = new ComponentPrewarmer(context.getApplicationContext(), locale, allowlist);
+                sPrewarmers.put(allowlist, prewarmer);
+                start = true;
+            }
+        }
+        if (listener != null) {
+            prewarmer.addListener(listener);
+        }
+        if (start) {
+            new Thread(prewarmer.mTask, "ComponentPrewarmer").start();
+        }
+        return prewarmer.mTask;
+    }
+
+    /**
+     * Calls <code>listener</code> on the UI thread once the prewarm is done, right away if it is
+     * done already.
+     */
+    private void addListener(final PhoneCountryFlagsComponent.OnPrewarmedListener listener) {
+        synchronized (this) {
+            if (mListeners != null) {
+                mListeners.add(listener);
+                return;
+            }
+        }
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onPrewarmed();
+            }
+        });
+    }
+
+    private void notifyListeners() {
+        final ArrayList<PhoneCountryFlagsComponent.OnPrewarmedListener> listeners;
+        synchronized (this) {
+            listeners = mListeners;
+            mListeners = null;
+        }
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < listeners.size(); i++) {
+                    listeners.get(i).onPrewarmed();
+                }
+            }
+        });
+    }
+
+    private static void load(Context context, Locale locale, RegionAllowlist allowlist) {
+
+        Tracer.d("ComponentPrewarmer load");
+
+        // the metadata of the formatter's region and of the user's, which the formatter and
+        // validation need first, in the instance the components use
+        PhoneNumberUtil util = allowlist == null ? PhoneNumberUtil.getInstance() : allowlist.getPhoneNumberUtil();
+        util.getAsYouTypeFormatter(CustomPhoneNumberFormattingTextWatcher.getDefaultCountryCode());
+        String region = RegionProvider.getInstance(context).getRegion();
+        util.getCountryCodeForRegion(region);
+
+        Tracer.begin(Tracer.SECTION_LOAD_COUNTRIES);
+        try {
+            CountryRegistry.getInstance();
+        } finally {
+            Tracer.end();
+        }
+        Tracer.begin(Tracer.SECTION_LOAD_NAMES);
+        try {
+            CountryNames.getInstance(locale, allowlist);
+        } finally {
+            Tracer.end();
+        }
+
+        FontCache.get(FontCache.LATO_REGULAR, context);
+        FlagAtlas.getInstance(context);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.view.View;
+
+/**
+ * What a phone component saves: the selected country, by number, and the number as shown with
+ * its cursor. The number was formatted and its country detected before it was saved, so restoring
+ * it does neither again.
+ */
+class ComponentSavedState extends View.BaseSavedState {
+
+    /**
+     * {@link Country#getNum()} of the selected country, or -1.
+     */
+    int mCountryNum = -1;
+    String mPhone = "";
+    int mSelection;
+
+    ComponentSavedState(Parcelable superState) {
+        super(superState);
+    }
+
+    private ComponentSavedState(Parcel in) {
+        super(in);
+        mCountryNum = in.readInt();
+        String phone = in.readString();
+        mPhone = phone != null ? phone : "";
+        mSelection = in.readInt();
+    }
+
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+        super.writeToParcel(out, flags);
+        out.writeInt(mCountryNum);
+        out.writeString(mPhone);
+        out.writeInt(mSelection);
+    }
+
+    public static final Parcelable.Creator<ComponentSavedState> CREATOR = new Parcelable.Creator<ComponentSavedState>() {
+        @Override
+        public ComponentSavedState createFromParcel(Parcel in) {
+            return new ComponentSavedState(in);
+        }
+
+        @Override
+        public ComponentSavedState[] newArray(int size) {
+            return new ComponentSavedState[size];
+        }
+    };
+}
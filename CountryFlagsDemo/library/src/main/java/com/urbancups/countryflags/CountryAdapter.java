@@ -16,76 +16,266 @@
 package com.urbancups.countryflags;
 
 import android.content.Context;
+import android.content.res.Resources;
+import android.os.AsyncTask;
+import android.text.Layout;
+import android.text.TextPaint;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.ImageView;
-import android.widget.TextView;
 
-import timber.log.Timber;
+import java.lang.ref.WeakReference;
+import java.util.List;
 
+/**
+ * The countries of a {@link CountryNames}, shown as flags in the spinner and as flag, name and
+ * dial code in its dropdown. The text of the dropdown rows is laid out off the UI thread: the dial
+ * codes as soon as the countries are set, the names once the width of their column is known from
+ * the first rows shown. Until then rows lay out their text while being measured.
+ */
 public class CountryAdapter extends ArrayAdapter<Country> {
 
+    /**
+     * How far outside the rows being bound the flags are decoded ahead.
+     */
+    private static final int PREFETCH_ROWS = 4;
+
     private LayoutInflater mLayoutInflater;
+    private FlagLoader mFlagLoader;
+    private CountryNames mNames;
+    private final int mFlagWidth;
+    private final int mFlagHeight;
+    private final int mDropFlagWidth;
+    private final int mDropFlagHeight;
+    private final TextPaint mNamePaint;
+    private final TextPaint mCodePaint;
+
+    /**
+     * Layouts of the dial codes and of the names of the dropdown rows, by position, null until built.
+     */
+    private Layout[] mCodeLayouts;
+    private Layout[] mNameLayouts;
+
+    /**
+     * The name column width mNameLayouts are being built for, 0 for none.
+     */
+    private int mNameWidth;
+
+    private BuildLayoutsTask mCodeTask;
+    private BuildLayoutsTask mNameTask;
 
     public CountryAdapter(Context context) {
         super(context, 0);
 
-        Timber.d("CountryAdapter constructor");
+        Tracer.d("CountryAdapter constructor");
 
         mLayoutInflater = LayoutInflater.from(context);
+        mFlagLoader = FlagLoader.getInstance(context);
+        Resources res = context.getResources();
+        mFlagWidth = res.getDimensionPixelSize(R.dimen.flag_width);
+        mFlagHeight = res.getDimensionPixelSize(R.dimen.flag_height);
+        mDropFlagWidth = res.getDimensionPixelSize(R.dimen.flag_drop_width);
+        mDropFlagHeight = res.getDimensionPixelSize(R.dimen.flag_drop_height);
+
+        // the paints of the rows' text views, as item_country_drop and the theme set them
+        View row = mLayoutInflater.inflate(R.layout.item_country_drop, null, false);
+        mNamePaint = ((LayoutTextView) row.findViewById(R.id.country_name)).getPaint();
+        mCodePaint = ((LayoutTextView) row.findViewById(R.id.country_code)).getPaint();
     }
 
-    public View getDropDownView(int position, View convertView, ViewGroup parent) {
+    /**
+     * Shows the countries of <code>names</code>, sorted and named in its locale.
+     */
+    public void setCountryNames(CountryNames names) {
+        mNames = names;
+        setNotifyOnChange(false);
+        clear();
+        addAll(names.getSortedCountries());
+        mCodeLayouts = null;
+        mNameLayouts = null;
+        mNameWidth = 0;
+        cancel(mCodeTask);
+        cancel(mNameTask);
+        mNameTask = null;
+        mCodeTask = new BuildLayoutsTask(this, names, mCodePaint, 0);
+        mCodeTask.execute();
+        notifyDataSetChanged();
+    }
+
+    public CountryNames getCountryNames() {
+        return mNames;
+    }
 
-        Timber.d("CountryAdapter getDropDownView");
-
-        final ViewHolder holder;
-        if (convertView == null) {
-            convertView = mLayoutInflater.inflate(R.layout.item_country_drop, parent, false);
-            holder = new ViewHolder();
-            holder.mImageView = (ImageView) convertView.findViewById(R.id.image);
-            holder.mNameView = (TextView) convertView.findViewById(R.id.country_name);
-            holder.mCodeView = (TextView) convertView.findViewById(R.id.country_code);
-            convertView.setTag(holder);
-        } else {
-            holder = (ViewHolder) convertView.getTag();
+    @Override
+    public int getPosition(Country country) {
+        if (mNames == null) {
+            return super.getPosition(country);
         }
-        Country country = getItem(position);
-        if (country != null) {
-            holder.mNameView.setText(country.getName());
-            holder.mCodeView.setText(country.getCountryCodeStr());
-            holder.mImageView.setImageResource(country.getResId());
+        return mNames.getPosition(country);
+    }
+
+    public View getDropDownView(int position, View convertView, ViewGroup parent) {
+
+        Tracer.d("CountryAdapter getDropDownView");
+
+        Tracer.begin(Tracer.SECTION_BIND_DROPDOWN);
+        try {
+            final ViewHolder holder;
+            if (convertView == null) {
+                convertView = mLayoutInflater.inflate(R.layout.item_country_drop, parent, false);
+                holder = new ViewHolder();
+                holder.mImageView = (ImageView) convertView.findViewById(R.id.image);
+                holder.mNameView = (LayoutTextView) convertView.findViewById(R.id.country_name);
+                holder.mCodeView = (LayoutTextView) convertView.findViewById(R.id.country_code);
+                convertView.setTag(holder);
+            } else {
+                holder = (ViewHolder) convertView.getTag();
+                requestNameLayouts(holder);
+            }
+            Country country = getItem(position);
+            if (country != null) {
+                if (mNameLayouts != null) {
+                    holder.mNameView.setTextLayout(mNameLayouts[position]);
+                } else {
+                    holder.mNameView.setText(mNames != null ? mNames.getName(country) : country.getName());
+                }
+                if (mCodeLayouts != null) {
+                    holder.mCodeView.setTextLayout(mCodeLayouts[position]);
+                } else {
+                    holder.mCodeView.setText(country.getCountryCodeStr());
+                }
+                mFlagLoader.load(holder.mImageView, country, mDropFlagWidth, mDropFlagHeight);
+                prefetchFlags(position);
+            }
+            return convertView;
+        } finally {
+            Tracer.end();
         }
-        return convertView;
     }
 
     @Override
     public void notifyDataSetChanged() {
         super.notifyDataSetChanged();
 
-        Timber.d("CountryAdapter notifyDataSetChanged");
+        Tracer.d("CountryAdapter notifyDataSetChanged");
     }
 
     public View getView(int position, View convertView, ViewGroup parent) {
 
-        Timber.d("CountryAdapter getView");
+        Tracer.d("CountryAdapter getView");
+
+        Tracer.begin(Tracer.SECTION_BIND);
+        try {
+            final ViewHolder holder;
+            if (convertView == null) {
+                convertView = mLayoutInflater.inflate(R.layout.item_country, parent, false);
+                holder = new ViewHolder();
+                holder.mImageView = (ImageView) convertView.findViewById(R.id.image);
+                convertView.setTag(holder);
+            } else {
+                holder = (ViewHolder) convertView.getTag();
+            }
+            mFlagLoader.load(holder.mImageView, getItem(position), mFlagWidth, mFlagHeight);
+            return convertView;
+        } finally {
+            Tracer.end();
+        }
+    }
+
+    /**
+     * Decodes the dropdown flags just outside the rows being bound, in both scroll directions,
+     * so they are ready when scrolled into view.
+     */
+    private void prefetchFlags(int position) {
+        int count = getCount();
+        int after = position + PREFETCH_ROWS;
+        int before = position - PREFETCH_ROWS;
+        if (after < count) {
+            mFlagLoader.prefetch(getItem(after), mDropFlagWidth, mDropFlagHeight);
+        }
+        if (before >= 0) {
+            mFlagLoader.prefetch(getItem(before), mDropFlagWidth, mDropFlagHeight);
+        }
+    }
+
+    /**
+     * Starts laying out the names for the width of the name column of <code>holder</code>, a row
+     * that was laid out already. Only rows whose code column is as wide as the code layouts tell it:
+     * the name column takes the rest of the row.
+     */
+    private void requestNameLayouts(ViewHolder holder) {
+        if (mCodeLayouts == null || mCodeLayouts.length == 0) {
+            return;
+        }
+        LayoutTextView codeView = holder.mCodeView;
+        if (codeView.getWidth() != codeView.getPaddingLeft() + codeView.getPaddingRight() + mCodeLayouts[0].getWidth()) {
+            return;
+        }
+        LayoutTextView nameView = holder.mNameView;
+        int width = nameView.getWidth() - nameView.getPaddingLeft() - nameView.getPaddingRight();
+        if (width > 0 && width != mNameWidth) {
+            mNameWidth = width;
+            cancel(mNameTask);
+            mNameTask = new BuildLayoutsTask(this, mNames, mNamePaint, width);
+            mNameTask.execute();
+        }
+    }
+
+    private static void cancel(BuildLayoutsTask task) {
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Lays out the dial codes when <code>mWidth</code> is 0, or the names at <code>mWidth</code>.
+     * Holds its adapter weakly, so that a dropdown closed meanwhile can be collected.
+     */
+    static class BuildLayoutsTask extends AsyncTask<Void, Void, Layout[]> {
+
+        private final WeakReference<CountryAdapter> mAdapter;
+        private final CountryNames mNames;
+        private final TextPaint mPaint;
+        private final int mWidth;
+
+        BuildLayoutsTask(CountryAdapter adapter, CountryNames names, TextPaint paint, int width) {
+            mAdapter = new WeakReference<>(adapter);
+            mNames = names;
+            mPaint = paint;
+            mWidth = width;
+        }
+
+        @Override
+        protected Layout[] doInBackground(Void... params) {
+            List<Country> countries = mNames.getSortedCountries();
+            if (mWidth == 0) {
+                return CountryTextLayouts.buildCodes(countries, mPaint);
+            }
+            return CountryTextLayouts.buildNames(countries, mNames, mPaint, mWidth);
+        }
 
-        Country country = getItem(position);
-        if (convertView == null) {
-            convertView = mLayoutInflater.inflate(R.layout.item_country, parent, false);
+        @Override
+        protected void onPostExecute(Layout[] layouts) {
+            CountryAdapter adapter = mAdapter.get();
+            if (adapter == null || mNames != adapter.mNames) {
+                // gone, or the countries changed while laying out
+                return;
+            }
+            if (mWidth == 0) {
+                adapter.mCodeLayouts = layouts;
+            } else if (mWidth == adapter.mNameWidth) {
+                adapter.mNameLayouts = layouts;
+            }
         }
-        ImageView imageView = (ImageView) convertView.findViewById(R.id.image);
-        imageView.setImageResource(country.getResId());
-        return convertView;
     }
 
     private static class ViewHolder {
 
         public ImageView mImageView;
-        public TextView mNameView;
-        public TextView mCodeView;
+        public LayoutTextView mNameView;
+        public LayoutTextView mCodeView;
     }
 
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+
+/**
+ * Detects the country of the number being typed on a background thread.
+ * <p/>
+ * Requests are coalesced: a new request replaces the one still waiting, and results of requests
+ * that were superseded or cancelled are dropped. Only the result of the latest request is
+ * delivered to the listener, on the UI thread, and only when it differs from the selected country.
+ * All components share one worker thread.
+ */
+public class CountryDetector {
+
+    public interface OnCountryDetectedListener {
+
+        void onCountryDetected(Country country);
+
+    }
+
+    private static final int MSG_DETECT = 1;
+    private static final int MSG_RESULT = 2;
+
+    private static HandlerThread sWorkerThread;
+
+    private final Handler mWorkerHandler;
+    private final Handler mMainHandler;
+    private final OnCountryDetectedListener mListener;
+
+    /**
+     * Generation of the latest request. Written on the UI thread, read by the worker to skip
+     * requests that became stale while waiting.
+     */
+    private volatile int mGeneration;
+
+    private final Handler.Callback mWorkerCallback = new Handler.Callback() {
+        @Override
+        public boolean handleMessage(Message msg) {
+            if (msg.arg1 != mGeneration) {
+                return true;
+            }
+            Country country;
+            Tracer.begin(Tracer.SECTION_DETECT);
+            try {
+                country = detect((String) msg.obj, msg.arg2);
+            } finally {
+                Tracer.end();
+            }
+            if (country != null) {
+                mMainHandler.obtainMessage(MSG_RESULT, msg.arg1, 0, country).sendToTarget();
+            }
+            return true;
+        }
+    };
+
+    private final Handler.Callback mMainCallback = new Handler.Callback() {
+        @Override
+        public boolean handleMessage(Message msg) {
+            if (msg.arg1 == mGeneration) {
+                mListener.onCountryDetected((Country) msg.obj);
+            }
+            return true;
+        }
+    };
+
+    public CountryDetector(OnCountryDetectedListener listener) {
+        mListener = listener;
+        mWorkerHandler = new Handler(getWorkerLooper(), mWorkerCallback);
+        mMainHandler = new Handler(Looper.getMainLooper(), mMainCallback);
+    }
+
+    private static synchronized Looper getWorkerLooper() {
+        if (sWorkerThread == null) {
+            sWorkerThread = new HandlerThread("CountryDetector", Process.THREAD_PRIORITY_BACKGROUND);
+            sWorkerThread.start();
+        }
+        return sWorkerThread.getLooper();
+    }
+
+    /**
+     * Schedules detection for <code>phone</code>, replacing any request still waiting.
+     * Must be called on the UI thread.
+     *
+     * @param selected the currently selected country, or null
+     */
+    public void detect(String phone, Country selected) {
+        int generation = ++mGeneration;
+        mWorkerHandler.removeMessages(MSG_DETECT);
+        mMainHandler.removeMessages(MSG_RESULT);
+        mWorkerHandler.obtainMessage(MSG_DETECT, generation, selected != null ? selected.getNum() : -1, phone)
+                .sendToTarget();
+    }
+
+    /**
+     * Drops the pending request and any result not delivered yet. Must be called on the UI thread.
+     */
+    public void cancel() {
+        mGeneration++;
+        mWorkerHandler.removeMessages(MSG_DETECT);
+        mMainHandler.removeMessages(MSG_RESULT);
+    }
+
+    private static Country detect(String phone, int selectedNum) {
+
+        Tracer.d("CountryDetector detect");
+
+        CountryRegistry registry = CountryRegistry.peek();
+        if (registry == null) {
+            return null;
+        }
+        Country selected = selectedNum >= 0 ? registry.getCountries().get(selectedNum) : null;
+        return registry.detectCountry(phone, selected);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Loads what a component lists: the countries named in a locale and limited to an allowlist, and
+ * the country of the user's region to select by default.
+ * <p/>
+ * Loading runs in a static task that only holds the application context, so it never keeps a
+ * component alive. Components asking for the same locale and allowlist while it runs share it.
+ * The last result per locale and allowlist is kept for as long as the user's region stays the
+ * same, and delivered right away, so a component recreated after a rotation doesn't wait at all.
+ * <p/>
+ * Must be used from the UI thread.
+ */
+final class CountryLoader {
+
+    interface Callback {
+
+        void onCountriesLoaded(CountryNames names, Country defaultCountry);
+
+    }
+
+    private static final HashMap<Key, LoadTask> sTasks = new HashMap<>();
+    private static final HashMap<Key, Result> sResults = new HashMap<>();
+
+    static {
+        // for the deprecated Country.getResId()
+        Country.setFlagResIds(CountryFlags.RES_IDS);
+    }
+
+    private final LoadTask mTask;
+    private Callback mCallback;
+
+    private CountryLoader(LoadTask task, Callback callback) {
+        mTask = task;
+        mCallback = callback;
+    }
+
+    /**
+     * Calls <code>callback</code> with the countries of <code>locale</code> and
+     * <code>allowlist</code>, right away if they were loaded before.
+     *
+     * @return a handle to cancel the delivery with, or null if <code>callback</code> was called
+     * already
+     */
+    static CountryLoader load(Context context, Locale locale, RegionAllowlist allowlist, Callback callback) {
+        Key key = new Key(locale, allowlist);
+        Result result = sResults.get(key);
+        if (result != null && TextUtils.equals(result.mRegion, RegionProvider.getInstance(context).peekRegion())) {
+            Tracer.d("CountryLoader reusing %s", key);
+            callback.onCountriesLoaded(result.mNames, result.mDefaultCountry);
+            return null;
+        }
+
+        LoadTask task = sTasks.get(key);
+        if (task == null) {
+            task = new LoadTask(context.getApplicationContext(), key);
+            sTasks.put(key, task);
+            task.execute();
+        }
+        CountryLoader loader = new CountryLoader(task, callback);
+        task.mLoaders.add(loader);
+        return loader;
+    }
+
+    /**
+     * @return the locale components name the countries in, which they load with
+     */
+    static Locale getLocale(Context context) {
+        return context.getResources().getConfiguration().locale;
+    }
+
+    /**
+     * Drops the delivery, so the task doesn't hold the callback anymore. The task itself runs on:
+     * its result is kept for the next component asking for it.
+     */
+    void cancel() {
+        mCallback = null;
+        mTask.mLoaders.remove(this);
+    }
+
+    private static final class Key {
+
+        final Locale mLocale;
+        final RegionAllowlist mAllowlist;
+
+        Key(Locale locale, RegionAllowlist allowlist) {
+            mLocale = locale;
+            mAllowlist = allowlist;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            // allowlists are interned
+            return mLocale.equals(key.mLocale) && mAllowlist == key.mAllowlist;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mLocale.hashCode() + System.identityHashCode(mAllowlist);
+        }
+
+        @Override
+        public String toString() {
+            return mLocale + (mAllowlist != null ? " " + mAllowlist : "");
+        }
+    }
+
+    private static final class Result {
+
+        CountryNames mNames;
+        Country mDefaultCountry;
+
+        /**
+         * The region mDefaultCountry was picked for.
+         */
+        String mRegion;
+    }
+
+    private static class LoadTask extends AsyncTask<Void, Void, Result> {
+
+        private final Context mContext;
+        private final Key mKey;
+        final ArrayList<CountryLoader> mLoaders = new ArrayList<>();
+
+        LoadTask(Context context, Key key) {
+            mContext = context;
+            mKey = key;
+        }
+
+        @Override
+        protected Result doInBackground(Void... params) {
+
+            Tracer.d("CountryLoader doInBackground");
+
+            Result result = new Result();
+            CountryRegistry registry;
+            Tracer.begin(Tracer.SECTION_LOAD_COUNTRIES);
+            try {
+                registry = CountryRegistry.getInstance();
+            } finally {
+                Tracer.end();
+            }
+            // names and sort order of the locale, created only the first time it is used
+            Tracer.begin(Tracer.SECTION_LOAD_NAMES);
+            try {
+                result.mNames = CountryNames.getInstance(mKey.mLocale, mKey.mAllowlist);
+            } finally {
+                Tracer.end();
+            }
+            // decode the flags before the adapter needs them, a no-op without the atlas
+            FlagAtlas.getInstance(mContext);
+
+            result.mRegion = RegionProvider.getInstance(mContext).getRegion();
+            result.mDefaultCountry = registry.getDefaultCountryForRegion(result.mRegion, mKey.mAllowlist);
+            return result;
+        }
+
+        @Override
+        protected void onPostExecute(Result result) {
+
+            Tracer.d("CountryLoader onPostExecute country was %s", result.mDefaultCountry);
+
+            sTasks.remove(mKey);
+            sResults.put(mKey, result);
+            // a callback may cancel other loaders, or load again
+            ArrayList<CountryLoader> loaders = new ArrayList<>(mLoaders);
+            mLoaders.clear();
+            for (int i = 0; i < loaders.size(); i++) {
+                Callback callback = loaders.get(i).mCallback;
+                if (callback != null) {
+                    callback.onCountriesLoaded(result.mNames, result.mDefaultCountry);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+
+/**
+ * Countries matching the current query, found with the {@link CountrySearchIndex} of a
+ * {@link CountryNames} and shown with their names in its locale. Item ids are the country
+ * numbers, so they are stable across queries, and a recycled row still showing the same country
+ * is not bound again.
+ */
+public class CountryPickerAdapter extends BaseAdapter {
+
+    private final LayoutInflater mLayoutInflater;
+    private final FlagLoader mFlagLoader;
+    private final CountryNames mNames;
+    private final CountrySearchIndex mIndex;
+    private final int[] mResults;
+    private int mCount;
+    private final int mFlagWidth;
+    private final int mFlagHeight;
+
+    public CountryPickerAdapter(Context context, CountryNames names) {
+        mLayoutInflater = LayoutInflater.from(context);
+        mFlagLoader = FlagLoader.getInstance(context);
+        mNames = names;
+        mIndex = names.getSearchIndex();
+        mResults = new int[mIndex.size()];
+        mCount = mIndex.search("", mResults);
+
+        Resources res = context.getResources();
+        mFlagWidth = res.getDimensionPixelSize(R.dimen.flag_drop_width);
+        mFlagHeight = res.getDimensionPixelSize(R.dimen.flag_drop_height);
+    }
+
+    /**
+     * Shows the countries matching <code>query</code>.
+     */
+    public void setQuery(CharSequence query) {
+        mCount = mIndex.search(query, mResults);
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public Country getItem(int position) {
+        return mIndex.getCountry(mResults[position]);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getNum();
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        Tracer.begin(Tracer.SECTION_BIND_DROPDOWN);
+        try {
+            final ViewHolder holder;
+            if (convertView == null) {
+                convertView = mLayoutInflater.inflate(R.layout.item_country_drop, parent, false);
+                holder = new ViewHolder();
+                holder.mImageView = (ImageView) convertView.findViewById(R.id.image);
+                holder.mNameView = (LayoutTextView) convertView.findViewById(R.id.country_name);
+                holder.mCodeView = (LayoutTextView) convertView.findViewById(R.id.country_code);
+                convertView.setTag(holder);
+            } else {
+                holder = (ViewHolder) convertView.getTag();
+            }
+            Country country = getItem(position);
+            if (holder.mCountry != country) {
+                holder.mCountry = country;
+                holder.mNameView.setText(mNames.getName(country));
+                holder.mCodeView.setText(country.getCountryCodeStr());
+                mFlagLoader.load(holder.mImageView, country, mFlagWidth, mFlagHeight);
+            }
+            return convertView;
+        } finally {
+            Tracer.end();
+        }
+    }
+
+    private static class ViewHolder {
+
+        public ImageView mImageView;
+        public LayoutTextView mNameView;
+        public LayoutTextView mCodeView;
+        public Country mCountry;
+    }
+}
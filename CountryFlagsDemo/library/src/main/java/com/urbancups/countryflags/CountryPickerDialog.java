@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.view.Window;
+import android.widget.AdapterView;
+import android.widget.EditText;
+import android.widget.ListView;
+
+/**
+ * Country list with a search field, used instead of the spinner dropdown in searchable picker
+ * mode (see {@link PhoneCountryFlagsComponent#setSearchablePicker(boolean)}).
+ */
+public class CountryPickerDialog extends Dialog {
+
+    public interface OnCountryPickedListener {
+
+        void onCountryPicked(Country country);
+
+    }
+
+    private final CountryNames mNames;
+    private final OnCountryPickedListener mListener;
+    private CountryPickerAdapter mAdapter;
+
+    public CountryPickerDialog(Context context, CountryNames names, OnCountryPickedListener listener) {
+        super(context);
+        mNames = names;
+        mListener = listener;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        requestWindowFeature(Window.FEATURE_NO_TITLE);
+        setContentView(R.layout.dialog_country_picker);
+
+        mAdapter = new CountryPickerAdapter(getContext(), mNames);
+
+        ListView list = (ListView) findViewById(R.id.countryPicker_list);
+        list.setAdapter(mAdapter);
+        list.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                mListener.onCountryPicked(mAdapter.getItem(position));
+                dismiss();
+            }
+        });
+
+        EditText search = (EditText) findViewById(R.id.countryPicker_search);
+        search.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                mAdapter.setQuery(s);
+            }
+        });
+    }
+}
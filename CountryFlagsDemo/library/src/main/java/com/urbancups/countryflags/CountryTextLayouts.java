@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import java.util.List;
+
+/**
+ * Builds the text layouts of the dropdown rows of a {@link CountryAdapter}, by position in its
+ * sorted countries. Meant to run off the UI thread: each call lays out with its own copy of the
+ * paint, which the layouts keep drawing with.
+ */
+final class CountryTextLayouts {
+
+    private CountryTextLayouts() {
+    }
+
+    /**
+     * Lays out the dial codes, all as wide as the widest one, so the code column and with it the
+     * name column have the same width in every row.
+     */
+    static Layout[] buildCodes(List<Country> countries, TextPaint paint) {
+        TextPaint copy = new TextPaint(paint);
+        int size = countries.size();
+        String[] codes = new String[size];
+        float width = 0;
+        for (int i = 0; i < size; i++) {
+            codes[i] = countries.get(i).getCountryCodeStr();
+            width = Math.max(width, Layout.getDesiredWidth(codes[i], copy));
+        }
+        int columnWidth = (int) Math.ceil(width);
+        Layout[] layouts = new Layout[size];
+        for (int i = 0; i < size; i++) {
+            layouts[i] = newLayout(codes[i], copy, columnWidth);
+        }
+        return layouts;
+    }
+
+    /**
+     * Lays out the names of <code>names</code> wrapped at <code>width</code>.
+     */
+    static Layout[] buildNames(List<Country> countries, CountryNames names, TextPaint paint, int width) {
+        TextPaint copy = new TextPaint(paint);
+        int size = countries.size();
+        Layout[] layouts = new Layout[size];
+        for (int i = 0; i < size; i++) {
+            String name = names.getName(countries.get(i));
+            layouts[i] = newLayout(name != null ? name : countries.get(i).getName(), copy, width);
+        }
+        return layouts;
+    }
+
+    private static Layout newLayout(CharSequence text, TextPaint paint, int width) {
+        // the spacing and padding TextView uses
+        return new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1, 0, true);
+    }
+}
@@ -18,16 +18,12 @@ package com.urbancups.countryflags;
 
 import android.telephony.PhoneNumberUtils;
 import android.text.Editable;
-import android.text.Selection;
 import android.text.TextWatcher;
 
-import com.google.i18n.phonenumbers.AsYouTypeFormatter;
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
 
 import java.util.Locale;
 
-import timber.log.Timber;
-
 public class CustomPhoneNumberFormattingTextWatcher implements TextWatcher {
 
     /**
@@ -40,7 +36,9 @@ public class CustomPhoneNumberFormattingTextWatcher implements TextWatcher {
      */
     private boolean mStopFormatting;
 
-    private AsYouTypeFormatter asYouTypeFormatter;
+    private IncrementalAsYouTypeFormatter asYouTypeFormatter;
+
+    private final String mCountryCode;
 
     private OnPhoneChangedListener mOnPhoneChangedListener;
 
@@ -49,10 +47,18 @@ public class CustomPhoneNumberFormattingTextWatcher implements TextWatcher {
      * may not take effect on this instance.
      */
     public CustomPhoneNumberFormattingTextWatcher(OnPhoneChangedListener listener) {
-        this(Locale.getDefault().getCountry());
+        this(getDefaultCountryCode());
         mOnPhoneChangedListener = listener;
     }
 
+    /**
+     * @return the region the formatter of {@link #CustomPhoneNumberFormattingTextWatcher(OnPhoneChangedListener)}
+     * formats for, the one of the system locale
+     */
+    static String getDefaultCountryCode() {
+        return Locale.getDefault().getCountry();
+    }
+
     /**
      * The formatting is based on the given <code>countryCode</code>.
      *
@@ -62,7 +68,26 @@ public class CustomPhoneNumberFormattingTextWatcher implements TextWatcher {
      */
     public CustomPhoneNumberFormattingTextWatcher(String countryCode) {
         if (countryCode == null) throw new IllegalArgumentException();
-        asYouTypeFormatter = PhoneNumberUtil.getInstance().getAsYouTypeFormatter(countryCode);
+        mCountryCode = countryCode;
+        setPhoneNumberUtil(PhoneNumberUtil.getInstance());
+    }
+
+    /**
+     * Formats with the metadata of <code>phoneNumberUtil</code>, e.g. the one of a
+     * {@link RegionAllowlist}. Takes effect from the next change.
+     */
+    void setPhoneNumberUtil(PhoneNumberUtil phoneNumberUtil) {
+        asYouTypeFormatter = new IncrementalAsYouTypeFormatter(
+                phoneNumberUtil.getAsYouTypeFormatter(mCountryCode));
+    }
+
+    /**
+     * Forgets the number formatted so far and restarts formatting, keeping the formatter, for a
+     * field bound to a new number. Call it while the field is empty.
+     */
+    void reset() {
+        mStopFormatting = false;
+        asYouTypeFormatter.clear();
     }
 
     @Override
@@ -73,7 +98,7 @@ public class CustomPhoneNumberFormattingTextWatcher implements TextWatcher {
         }
         // If the user manually deleted any non-dialable characters, stop formatting
         if (count > 0 && hasSeparator(s, start, count)) {
-            Timber.d("beforeTextChanged: stop formatting because nondiallable characters, s was %s", s.toString());
+            Tracer.d("beforeTextChanged: stop formatting because nondiallable characters, s was %s", s);
             stopFormatting();
         }
     }
@@ -101,9 +126,8 @@ public class CustomPhoneNumberFormattingTextWatcher implements TextWatcher {
             // Ignore the change caused by s.replace().
             return;
         }
-        String formatted = reformat(s, Selection.getSelectionEnd(s));
+        String formatted = reformat(s);
         if (formatted != null) {
-            int rememberedPos = asYouTypeFormatter.getRememberedPosition();
             mSelfChange = true;
 
             //s.replace(0, formatted.length(), formatted);
@@ -124,60 +148,39 @@ public class CustomPhoneNumberFormattingTextWatcher implements TextWatcher {
         }*/
 
         if (mOnPhoneChangedListener != null) {
-            mOnPhoneChangedListener.onPhoneChanged(formatted);
+            // The listener may write the formatted text back into s, don't reformat that change.
+            mSelfChange = true;
+            try {
+                mOnPhoneChangedListener.onPhoneChanged(formatted);
+            } finally {
+                mSelfChange = false;
+            }
         }
     }
 
     /**
-     * Generate the formatted number by ignoring all non-dialable chars and stick the cursor to the
-     * nearest dialable char to the left. For instance, if the number is  (650) 123-45678 and '4' is
-     * removed then the cursor should be behind '3' instead of '-'.
+     * Generate the formatted number by ignoring all non-dialable chars. Only the digits that
+     * changed since the previous call are fed to the formatter, see
+     * {@link IncrementalAsYouTypeFormatter}.
      */
-    private String reformat(CharSequence s, int cursor) {
+    private String reformat(CharSequence s) {
 
-        Timber.d("reformat with %s and position %s", s, String.valueOf(cursor));
+        Tracer.d("reformat with %s", s);
 
-        // The index of char to the leftward of the cursor.
-        int curIndex = cursor - 1;
-        String formatted = null;
-        asYouTypeFormatter.clear();
-        char lastNonSeparator = 0;
-        boolean hasCursor = false;
+        Tracer.begin(Tracer.SECTION_FORMAT);
+        try {
+            String formatted = asYouTypeFormatter.format(s);
 
-        int len = s.length();
-        for (int i = 0; i < len; i++) {
-            char c = s.charAt(i);
-            if (PhoneNumberUtils.isNonSeparator(c)) {
-                if (lastNonSeparator != 0) {
-                    formatted = getFormattedNumber(lastNonSeparator, hasCursor);
-                    hasCursor = false;
-                }
-                lastNonSeparator = c;
-            }
-            if (i == curIndex) {
-                hasCursor = true;
-            }
+            Tracer.d("reformat returning %s", formatted);
+            return formatted;
+        } finally {
+            Tracer.end();
         }
-        if (lastNonSeparator != 0) {
-            formatted = getFormattedNumber(lastNonSeparator, hasCursor);
-        }
-
-        if (formatted == null) {
-            return "";
-        }
-
-        Timber.d("reformat returning %s", formatted);
-        return formatted;
-    }
-
-    private String getFormattedNumber(char lastNonSeparator, boolean hasCursor) {
-        return hasCursor ? asYouTypeFormatter.inputDigitAndRememberPosition(lastNonSeparator)
-                : asYouTypeFormatter.inputDigit(lastNonSeparator);
     }
 
     private void stopFormatting() {
 
-        Timber.d("stopFormatting");
+        Tracer.d("stopFormatting");
 
         mStopFormatting = true;
         asYouTypeFormatter.clear();
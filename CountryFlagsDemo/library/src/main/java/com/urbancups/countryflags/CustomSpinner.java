@@ -2,12 +2,14 @@ package com.urbancups.countryflags;
 
 import android.content.Context;
 import android.util.AttributeSet;
+import android.view.View;
 import android.widget.Spinner;
 
 public class CustomSpinner extends Spinner {
 
     private boolean mToggleFlag = true;
     private OnItemSelectedListener listener;
+    private View.OnClickListener mOnOpenListener;
 
     public CustomSpinner(Context context, AttributeSet attrs,
                          int defStyle) {
@@ -46,6 +48,10 @@ public class CustomSpinner extends Spinner {
         // we have to make the getSelectedItemPosition to return 0 so you can
         // fool the Spinner and let it think that the selected item is the first
         // element
+        if (mOnOpenListener != null) {
+            mOnOpenListener.onClick(this);
+            return true;
+        }
         mToggleFlag = false;
         boolean result = super.performClick();
         mToggleFlag = true;
@@ -57,4 +63,12 @@ public class CustomSpinner extends Spinner {
         this.listener = listener;
     }
 
+    /**
+     * Replaces the dropdown: when a listener is set, clicking the spinner calls it instead of
+     * showing the list, e.g. to open a {@link CountryPickerDialog}.
+     */
+    public void setOnOpenListener(View.OnClickListener listener) {
+        mOnOpenListener = listener;
+    }
+
 }
\ No newline at end of file
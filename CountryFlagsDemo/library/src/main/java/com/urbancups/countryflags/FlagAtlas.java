@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * All flags packed into a single bitmap at build time by <code>flags.gradle</code>, used when the
+ * library is built with <code>flagAtlas=true</code> (see {@link BuildConfig#FLAG_ATLAS}).
+ * <p/>
+ * The atlas is decoded once per process. Every flag is drawn as a region of it by a
+ * {@link FlagDrawable}.
+ */
+public final class FlagAtlas {
+
+    private static final Object sLock = new Object();
+    private static volatile FlagAtlas sInstance;
+
+    private final Bitmap mBitmap;
+
+    /**
+     * x, y, width and height of every flag, in pixels of mBitmap.
+     */
+    private final int[] mRects;
+
+    private FlagAtlas(Bitmap bitmap, int[] rects) {
+        mBitmap = bitmap;
+        mRects = rects;
+    }
+
+    /**
+     * Returns the atlas, decoding it on the calling thread if nobody did it before.
+     *
+     * @return the atlas, or null if the library was built without it
+     */
+    public static FlagAtlas getInstance(Context context) {
+        if (!BuildConfig.FLAG_ATLAS) {
+            return null;
+        }
+        FlagAtlas atlas = sInstance;
+        if (atlas == null) {
+            synchronized (sLock) {
+                atlas = sInstance;
+                if (atlas == null) {
+                    Tracer.begin(Tracer.SECTION_LOAD_ATLAS);
+                    try {
+                        atlas = load(context.getApplicationContext().getResources(),
+                                context.getApplicationContext().getPackageName());
+                    } finally {
+                        Tracer.end();
+                    }
+                    sInstance = atlas;
+                }
+            }
+        }
+        return atlas;
+    }
+
+    private static FlagAtlas load(Resources res, String packageName) {
+
+        Tracer.d("FlagAtlas load");
+
+        // the atlas resources are generated only in atlas builds, so they can't be referenced through R
+        int bitmapId = res.getIdentifier("flag_atlas", "drawable", packageName);
+        int rectsId = res.getIdentifier("flag_atlas_rects", "array", packageName);
+        int widthId = res.getIdentifier("flag_atlas_width", "integer", packageName);
+        if (bitmapId == 0 || rectsId == 0 || widthId == 0) {
+            throw new IllegalStateException("flag atlas resources are missing");
+        }
+
+        Bitmap bitmap = BitmapFactory.decodeResource(res, bitmapId);
+        int[] rects = res.getIntArray(rectsId);
+
+        // the atlas may have been scaled to the screen density while decoding
+        float scale = bitmap.getWidth() / (float) res.getInteger(widthId);
+        if (scale != 1f) {
+            for (int i = 0; i < rects.length; i++) {
+                rects[i] = Math.round(rects[i] * scale);
+            }
+        }
+        return new FlagAtlas(bitmap, rects);
+    }
+
+    /**
+     * @return a new drawable showing the flag of <code>country</code>
+     */
+    public Drawable getDrawable(Country country) {
+        return new FlagDrawable(this, country.getNum());
+    }
+
+    /**
+     * Draws one flag of a {@link FlagAtlas}.
+     */
+    static class FlagDrawable extends Drawable {
+
+        private final FlagAtlas mAtlas;
+        private final Rect mSrc;
+        private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        FlagDrawable(FlagAtlas atlas, int num) {
+            mAtlas = atlas;
+            int[] rects = atlas.mRects;
+            int i = num * 4;
+            mSrc = new Rect(rects[i], rects[i + 1], rects[i] + rects[i + 2], rects[i + 1] + rects[i + 3]);
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+            canvas.drawBitmap(mAtlas.mBitmap, mSrc, getBounds(), mPaint);
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return mSrc.width();
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return mSrc.height();
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            mPaint.setAlpha(alpha);
+            invalidateSelf();
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+            mPaint.setColorFilter(colorFilter);
+            invalidateSelf();
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decodes flags on background threads at the size they are shown at, and keeps them in a memory
+ * cache bounded in bytes. The cache is trimmed when the system asks for memory. In builds with a
+ * {@link FlagAtlas}, flags are drawn from the atlas instead.
+ * <p/>
+ * Must be used from the UI thread.
+ */
+public final class FlagLoader implements ComponentCallbacks2 {
+
+    private static final int DECODE_THREADS = 2;
+
+    private static FlagLoader sInstance;
+
+    static {
+        // for the deprecated Country.getResId()
+        Country.setFlagResIds(CountryFlags.RES_IDS);
+    }
+
+    private final Resources mResources;
+    private final FlagAtlas mFlagAtlas;
+    private final LruCache<Integer, Bitmap> mCache;
+
+    /**
+     * Keys being decoded, with what to run once each is in the cache.
+     */
+    private final HashMap<Integer, ArrayList<Runnable>> mPending = new HashMap<>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(DECODE_THREADS, new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "FlagLoader");
+        }
+    });
+
+    private FlagLoader(Context context) {
+        mResources = context.getResources();
+        mFlagAtlas = FlagAtlas.getInstance(context);
+        // all flags at list size take well under 1MB, don't let them take more than 1/32 of the heap
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 32, Integer.MAX_VALUE);
+        mCache = new LruCache<Integer, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    public static FlagLoader getInstance(Context context) {
+        if (sInstance == null) {
+            Context app = context.getApplicationContext();
+            sInstance = new FlagLoader(app);
+            app.registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Shows the flag of <code>country</code> in <code>imageView</code>, decoded to fit
+     * <code>width</code> x <code>height</code> pixels. The view is cleared until the flag is decoded.
+     */
+    public void load(final ImageView imageView, Country country, int width, int height) {
+        if (mFlagAtlas != null) {
+            imageView.setImageDrawable(mFlagAtlas.getDrawable(country));
+            return;
+        }
+        final Integer key = key(country, width);
+        imageView.setTag(R.id.flag_loader_key, key);
+
+        Bitmap bitmap = mCache.get(key);
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap);
+            return;
+        }
+        imageView.setImageDrawable(null);
+        decode(key, CountryFlags.RES_IDS[country.getNum()], width, height, new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = mCache.get(key);
+                if (bitmap != null && key.equals(imageView.getTag(R.id.flag_loader_key))) {
+                    imageView.setImageBitmap(bitmap);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the flag of <code>country</code> at <code>width</code> x <code>height</code> pixels
+     * if it can be drawn right away. Otherwise starts decoding it and returns null;
+     * <code>onDecoded</code> then runs on the UI thread once a new call can return it.
+     */
+    public Drawable getDrawable(Country country, int width, int height, Runnable onDecoded) {
+        if (mFlagAtlas != null) {
+            return mFlagAtlas.getDrawable(country);
+        }
+        Integer key = key(country, width);
+        Bitmap bitmap = mCache.get(key);
+        if (bitmap != null) {
+            return new BitmapDrawable(mResources, bitmap);
+        }
+        decode(key, CountryFlags.RES_IDS[country.getNum()], width, height, onDecoded);
+        return null;
+    }
+
+    /**
+     * Decodes the flag of <code>country</code> into the cache, so that a later {@link #load} of the
+     * same size is immediate.
+     */
+    public void prefetch(Country country, int width, int height) {
+        if (mFlagAtlas != null) {
+            return;
+        }
+        Integer key = key(country, width);
+        if (mCache.get(key) == null) {
+            decode(key, CountryFlags.RES_IDS[country.getNum()], width, height, null);
+        }
+    }
+
+    private void decode(final Integer key, final int resId, final int width, final int height,
+                        final Runnable onDecoded) {
+        ArrayList<Runnable> callbacks = mPending.get(key);
+        if (callbacks != null) {
+            // already decoding
+            if (onDecoded != null) {
+                callbacks.add(onDecoded);
+            }
+            return;
+        }
+        callbacks = new ArrayList<>(1);
+        if (onDecoded != null) {
+            callbacks.add(onDecoded);
+        }
+        mPending.put(key, callbacks);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap;
+                Tracer.begin(Tracer.SECTION_DECODE_FLAG);
+                try {
+                    bitmap = decodeResource(resId, width, height);
+                } finally {
+                    Tracer.end();
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        ArrayList<Runnable> callbacks = mPending.remove(key);
+                        if (bitmap != null) {
+                            mCache.put(key, bitmap);
+                        }
+                        for (int i = 0; i < callbacks.size(); i++) {
+                            callbacks.get(i).run();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private Bitmap decodeResource(int resId, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(mResources, resId, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            Tracer.w("FlagLoader could not decode %d", resId);
+            return null;
+        }
+
+        float scale = Math.min(width / (float) options.outWidth, height / (float) options.outHeight);
+        int targetWidth = Math.max(1, Math.round(options.outWidth * scale));
+        int targetHeight = Math.max(1, Math.round(options.outHeight * scale));
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (options.outWidth / (options.inSampleSize * 2) >= targetWidth
+                && options.outHeight / (options.inSampleSize * 2) >= targetHeight) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap bitmap = BitmapFactory.decodeResource(mResources, resId, options);
+        if (bitmap == null || (bitmap.getWidth() == targetWidth && bitmap.getHeight() == targetHeight)) {
+            return bitmap;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    private static Integer key(Country country, int width) {
+        return (country.getNum() << 16) | (width & 0xffff);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+
+        Tracer.d("FlagLoader onTrimMemory %d", level);
+
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            mCache.evictAll();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                mCache.trimToSize(mCache.size() / 2);
+            } else {
+                // LruCache.trimToSize() is API 17
+                mCache.evictAll();
+            }
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        mCache.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+}
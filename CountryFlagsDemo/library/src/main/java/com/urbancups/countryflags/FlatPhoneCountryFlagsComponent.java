@@ -0,0 +1,537 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.text.InputType;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.EditText;
+import android.widget.Toast;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * A lighter {@link PhoneCountryFlagsComponent} for forms with many fields: the flag and the dial
+ * code are drawn by the view itself, next to its only child, the phone {@link EditText}. Measuring
+ * it measures the field once, and laying it out places the field once.
+ * <p/>
+ * The country is picked from a {@link CountryPickerDialog} opened by tapping the flag or the dial
+ * code. Formatting, detection and validation work as in {@link PhoneCountryFlagsComponent}.
+ * <p/>
+ * The text size and color of the field and the dial code are read from
+ * <code>android:textAppearance</code>, <code>android:textSize</code> and
+ * <code>android:textColor</code>. The flag and the dial code are mirrored in right-to-left layouts.
+ */
+public class FlatPhoneCountryFlagsComponent extends ViewGroup {
+
+    /**
+     * The text size if neither the text appearance nor the view sets one.
+     */
+    private static final float DEFAULT_TEXT_SIZE_SP = 16;
+    private static final float GAP_DP = 5;
+
+    private EditText mPhoneEdit;
+    private PhoneTextController mPhoneTextController;
+
+    /**
+     * The regions the component is limited to, null for all of them.
+     */
+    private RegionAllowlist mAllowlist;
+    private CountryNames mNames;
+    private Country mSelectedCountry;
+
+    /**
+     * The countries being loaded, null once they are shown.
+     */
+    private CountryLoader mLoader;
+
+    /**
+     * Loading was cancelled when the view was detached, and starts again when it is attached.
+     */
+    private boolean mReloadOnAttach;
+
+    /**
+     * The country restored from a saved state, or bound, before the countries were loaded: its
+     * number, or -1, or its region, or null.
+     */
+    private int mPendingCountryNum = -1;
+    private String mPendingRegion;
+
+    /**
+     * A number is being bound with its country, which detection must not override.
+     */
+    private boolean mBinding;
+
+    private String mCountryCode = "";
+    private Drawable mFlag;
+    private final TextPaint mCodePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+    private int mMargin;
+    private int mGap;
+    private int mFlagWidth;
+    private int mFlagHeight;
+
+    /**
+     * Width of everything before the phone field, padding excluded: margin, flag, gap, dial code and
+     * gap, mirrored in right-to-left layouts.
+     */
+    private int mPrefixWidth;
+    private int mCodeWidth;
+
+    private final OnPhoneChangedListener mOnPhoneChangedListener = new OnPhoneChangedListener() {
+        @Override
+        public void onPhoneChanged(String phone) {
+            if (mNames == null || mBinding) {
+                // countries are still loading, or the country is given
+                return;
+            }
+            mCountryDetector.detect(phone, mSelectedCountry);
+        }
+    };
+
+    private final CountryDetector mCountryDetector = new CountryDetector(new CountryDetector.OnCountryDetectedListener() {
+        @Override
+        public void onCountryDetected(Country country) {
+            // a country outside the allowlist isn't listed
+            if (country != mSelectedCountry && mNames != null && mNames.getPosition(country) >= 0) {
+                setSelectedCountry(country);
+            }
+        }
+    });
+
+    private final CountryLoader.Callback mOnCountriesLoaded = new CountryLoader.Callback() {
+        @Override
+        public void onCountriesLoaded(CountryNames names, Country defaultCountry) {
+            mLoader = null;
+            mNames = names;
+
+            Country country = mPendingCountryNum >= 0 || mPendingRegion != null ? getPendingCountry() : mSelectedCountry;
+            mPendingCountryNum = -1;
+            mPendingRegion = null;
+            if (country == null || names.getPosition(country) < 0) {
+                country = defaultCountry;
+            }
+            if (country != null && country != mSelectedCountry && names.getPosition(country) >= 0) {
+                setSelectedCountry(country);
+            }
+        }
+    };
+
+    public FlatPhoneCountryFlagsComponent(Context context) {
+        super(context);
+        init(context, null, 0);
+    }
+
+    public FlatPhoneCountryFlagsComponent(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context, attrs, 0);
+    }
+
+    public FlatPhoneCountryFlagsComponent(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context, attrs, defStyleAttr);
+    }
+
+    private void init(Context context, AttributeSet attrs, int defStyleAttr) {
+
+        Tracer.d("FlatPhoneCountryFlagsComponent init");
+
+        setWillNotDraw(false);
+
+        Resources res = context.getResources();
+        mMargin = res.getDimensionPixelSize(R.dimen.flat_component_margin);
+        mFlagWidth = res.getDimensionPixelSize(R.dimen.flag_drop_width);
+        mFlagHeight = res.getDimensionPixelSize(R.dimen.flag_drop_height);
+        mGap = Math.round(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, GAP_DP, res.getDisplayMetrics()));
+
+        mPhoneEdit = new LatoRegularEditText(context);
+        mPhoneEdit.setId(R.id.phone);
+        mPhoneEdit.setInputType(InputType.TYPE_CLASS_PHONE);
+        TextAppearance appearance = TextAppearance.read(context, attrs, defStyleAttr, DEFAULT_TEXT_SIZE_SP);
+        mPhoneEdit.setTextSize(TypedValue.COMPLEX_UNIT_PX, appearance.mTextSize);
+        mPhoneEdit.setTextColor(appearance.mTextColors);
+        mPhoneEdit.setHint(R.string.phoneNumberHint);
+        mPhoneEdit.setLines(1);
+        addView(mPhoneEdit, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+        mPhoneTextController = new PhoneTextController(mPhoneEdit, mOnPhoneChangedListener);
+
+        setContentDescription(context.getString(R.string.contentDescription_countryPicker));
+
+        if (attrs != null) {
+            TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.FlatPhoneCountryFlagsComponent);
+            String regions = a.getString(R.styleable.FlatPhoneCountryFlagsComponent_regions);
+            if (regions != null) {
+                applyAllowlist(RegionAllowlist.parse(regions));
+            }
+            a.recycle();
+        }
+
+        loadCountries();
+    }
+
+    /**
+     * Limits the component to <code>regions</code>, see
+     * {@link PhoneCountryFlagsComponent#setRegions(Collection)}. Can also be set with the
+     * <code>regions</code> attribute.
+     *
+     * @param regions ISO 3166-1 region codes, or null for all regions
+     */
+    public void setRegions(Collection<String> regions) {
+        RegionAllowlist allowlist = regions == null ? null : RegionAllowlist.of(regions);
+        if (allowlist != mAllowlist) {
+            applyAllowlist(allowlist);
+            loadCountries();
+        }
+    }
+
+    private void applyAllowlist(RegionAllowlist allowlist) {
+        mAllowlist = allowlist;
+        mPhoneTextController.setPhoneNumberUtil(
+                allowlist == null ? PhoneNumberUtil.getInstance() : allowlist.getPhoneNumberUtil());
+    }
+
+    private void loadCountries() {
+        if (mLoader != null) {
+            // loading for other regions
+            mLoader.cancel();
+        }
+        Locale locale = CountryLoader.getLocale(getContext());
+        mNames = CountryRegistry.peek() != null ? CountryNames.peek(locale, mAllowlist) : null;
+        mLoader = CountryLoader.load(getContext(), locale, mAllowlist, mOnCountriesLoaded);
+    }
+
+    public EditText getPhoneEdit() {
+        return mPhoneEdit;
+    }
+
+    public boolean validateNumber() {
+
+        try {
+            PhoneNumbers.validate(mPhoneEdit.getText().toString(), RegionProvider.getInstance(getContext()).getCachedRegion(),
+                    mAllowlist);
+            //Rejects if the number isn't in an acceptable format for the region code given etc.
+        } catch (NumberParseException e) {
+            Toast.makeText(getContext(), e.getMessage(), Toast.LENGTH_SHORT).show();
+            return false;
+        }
+
+        return true;
+    }
+
+    private void setSelectedCountry(final Country country) {
+        mSelectedCountry = country;
+        mCountryCode = getContext().getString(R.string.countryCode, String.valueOf(country.getCountryCode()));
+        final FlagLoader flagLoader = FlagLoader.getInstance(getContext());
+        mFlag = flagLoader.getDrawable(country, mFlagWidth, mFlagHeight, new Runnable() {
+            @Override
+            public void run() {
+                if (mSelectedCountry == country) {
+                    mFlag = flagLoader.getDrawable(country, mFlagWidth, mFlagHeight, null);
+                    invalidate();
+                }
+            }
+        });
+        String name = mNames != null ? mNames.getName(country) : null;
+        setContentDescription(getContext().getString(R.string.contentDescription_country,
+                name != null ? name : country.getName(), mCountryCode));
+        // the dial code may be wider or narrower, which moves the phone field
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        if (mReloadOnAttach) {
+            mReloadOnAttach = false;
+            loadCountries();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        mCountryDetector.cancel();
+        if (mLoader != null) {
+            mLoader.cancel();
+            mLoader = null;
+            mReloadOnAttach = true;
+        }
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        ComponentSavedState state = new ComponentSavedState(super.onSaveInstanceState());
+        Country country = mPendingCountryNum >= 0 || mPendingRegion != null ? getPendingCountry() : mSelectedCountry;
+        state.mCountryNum = country != null ? country.getNum() : -1;
+        state.mPhone = mPhoneEdit.getText().toString();
+        state.mSelection = mPhoneEdit.getSelectionEnd();
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof ComponentSavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        ComponentSavedState saved = (ComponentSavedState) state;
+        super.onRestoreInstanceState(saved.getSuperState());
+
+        mPhoneTextController.restoreText(saved.mPhone, saved.mSelection);
+        if (saved.mCountryNum < 0) {
+            return;
+        }
+        if (isLoading()) {
+            mPendingCountryNum = saved.mCountryNum;
+            mPendingRegion = null;
+        } else {
+            selectCountry(CountryRegistry.getInstance().getCountries().get(saved.mCountryNum));
+        }
+    }
+
+    /**
+     * Shows <code>number</code> with the country of <code>region</code> selected, reusing the
+     * view for another value, see {@link PhoneCountryFlagsComponent#bind(String, CharSequence)}.
+     *
+     * @param region the region code of the country to select, e.g. "US", or null to detect it from
+     *               the number
+     * @param number a national number of the region, or an international one, whose country is
+     *               then selected instead, or null for none. Only its national number is shown.
+     */
+    public void bind(String region, CharSequence number) {
+        mCountryDetector.cancel();
+        mPendingCountryNum = -1;
+        mPendingRegion = null;
+        if (region != null) {
+            region = region.toUpperCase(Locale.US);
+        }
+        mBinding = region != null;
+        String numberRegion;
+        try {
+            numberRegion = mPhoneTextController.bindText(number != null ? number : "",
+                    region != null ? region : RegionProvider.getInstance(getContext()).getCachedRegion());
+        } finally {
+            mBinding = false;
+        }
+        if (numberRegion != null) {
+            // an international number of another country
+            region = numberRegion;
+        }
+        if (region == null) {
+            return;
+        }
+        if (isLoading()) {
+            mPendingRegion = region;
+        } else {
+            selectCountry(CountryRegistry.getInstance().getCountryForRegion(region));
+        }
+    }
+
+    /**
+     * Clears the number, and drops detection still running for it, see
+     * {@link PhoneCountryFlagsComponent#unbind()}.
+     */
+    public void unbind() {
+        mCountryDetector.cancel();
+        mPendingCountryNum = -1;
+        mPendingRegion = null;
+        mPhoneTextController.restoreText("", 0);
+    }
+
+    /**
+     * @return whether the countries are still loading, or loading was cancelled on detach
+     */
+    private boolean isLoading() {
+        return mLoader != null || mReloadOnAttach || mNames == null;
+    }
+
+    private void selectCountry(Country country) {
+        if (country != null && country != mSelectedCountry && mNames.getPosition(country) >= 0) {
+            setSelectedCountry(country);
+        }
+    }
+
+    /**
+     * @return the country restored or bound before the countries were loaded, or null
+     */
+    private Country getPendingCountry() {
+        CountryRegistry registry = CountryRegistry.getInstance();
+        return mPendingCountryNum >= 0 ? registry.getCountries().get(mPendingCountryNum)
+                : registry.getCountryForRegion(mPendingRegion);
+    }
+
+    /**
+     * The phone field's state is part of the view's, see {@link ComponentSavedState}.
+     */
+    @Override
+    protected void dispatchSaveInstanceState(SparseArray<Parcelable> container) {
+        dispatchFreezeSelfOnly(container);
+    }
+
+    @Override
+    protected void dispatchRestoreInstanceState(SparseArray<Parcelable> container) {
+        dispatchThawSelfOnly(container);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // the code is drawn like the phone field, whose typeface may have been set since
+        mCodePaint.setTextSize(mPhoneEdit.getTextSize());
+        mCodePaint.setTypeface(mPhoneEdit.getTypeface());
+        mCodeWidth = (int) Math.ceil(mCodePaint.measureText(mCountryCode));
+        mPrefixWidth = mMargin + mFlagWidth + mGap + mCodeWidth + mGap;
+
+        int horizontalPadding = getPaddingLeft() + getPaddingRight() + mPrefixWidth + mMargin;
+        int verticalPadding = getPaddingTop() + getPaddingBottom();
+
+        int editWidthSpec;
+        if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            editWidthSpec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        } else {
+            // the field takes all the width left, like match_parent
+            int width = Math.max(0, MeasureSpec.getSize(widthMeasureSpec) - horizontalPadding);
+            editWidthSpec = MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY);
+        }
+        int editHeightSpec = getChildMeasureSpec(heightMeasureSpec, verticalPadding, LayoutParams.WRAP_CONTENT);
+        mPhoneEdit.measure(editWidthSpec, editHeightSpec);
+
+        Paint.FontMetricsInt metrics = mCodePaint.getFontMetricsInt();
+        int contentHeight = Math.max(mPhoneEdit.getMeasuredHeight(),
+                Math.max(mFlagHeight, metrics.descent - metrics.ascent));
+        setMeasuredDimension(
+                resolveSize(horizontalPadding + mPhoneEdit.getMeasuredWidth(), widthMeasureSpec),
+                resolveSize(verticalPadding + contentHeight, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int left = getPaddingLeft() + (isRtl() ? mMargin : mPrefixWidth);
+        int contentHeight = b - t - getPaddingTop() - getPaddingBottom();
+        int top = getPaddingTop() + (contentHeight - mPhoneEdit.getMeasuredHeight()) / 2;
+        mPhoneEdit.layout(left, top, left + mPhoneEdit.getMeasuredWidth(), top + mPhoneEdit.getMeasuredHeight());
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        boolean rtl = isRtl();
+        // the flag box, and the dial code after it
+        int left = rtl ? getWidth() - getPaddingRight() - mMargin - mFlagWidth : getPaddingLeft() + mMargin;
+        int codeLeft = rtl ? left - mGap - mCodeWidth : left + mFlagWidth + mGap;
+        int centerY = getPaddingTop() + (getHeight() - getPaddingTop() - getPaddingBottom()) / 2;
+
+        if (mFlag != null) {
+            // fit the flag into its box, keeping its aspect ratio
+            int width = mFlag.getIntrinsicWidth();
+            int height = mFlag.getIntrinsicHeight();
+            float scale = width <= 0 || height <= 0 ? 1
+                    : Math.min(mFlagWidth / (float) width, mFlagHeight / (float) height);
+            width = width <= 0 ? mFlagWidth : Math.round(width * scale);
+            height = height <= 0 ? mFlagHeight : Math.round(height * scale);
+            int flagLeft = left + (mFlagWidth - width) / 2;
+            int flagTop = centerY - height / 2;
+            mFlag.setBounds(flagLeft, flagTop, flagLeft + width, flagTop + height);
+            mFlag.draw(canvas);
+        }
+
+        // on the baseline and in the color of the phone field
+        int baseline = mPhoneEdit.getTop() + mPhoneEdit.getBaseline();
+        mCodePaint.setColor(mPhoneEdit.getCurrentTextColor());
+        canvas.drawText(mCountryCode, codeLeft, baseline, mCodePaint);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        boolean inPrefix = isRtl() ? event.getX() >= getWidth() - getPaddingRight() - mPrefixWidth
+                : event.getX() < getPaddingLeft() + mPrefixWidth;
+        if (!inPrefix) {
+            return super.onTouchEvent(event);
+        }
+        // the flag and the dial code open the picker
+        if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+            performClick();
+        }
+        return true;
+    }
+
+    /**
+     * The view stands for the flag and the dial code, which open the picker when clicked.
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setClickable(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            info.addAction(AccessibilityNodeInfo.AccessibilityAction.ACTION_CLICK);
+        } else {
+            info.addAction(AccessibilityNodeInfo.ACTION_CLICK);
+        }
+    }
+
+    /**
+     * Clicks the flag and the dial code, from API 16 on. The view itself isn't clickable, so that
+     * touches outside them don't open the picker.
+     */
+    @Override
+    public boolean performAccessibilityAction(int action, Bundle arguments) {
+        if (action == AccessibilityNodeInfo.ACTION_CLICK) {
+            return performClick();
+        }
+        return super.performAccessibilityAction(action, arguments);
+    }
+
+    private boolean isRtl() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && getLayoutDirection() == LAYOUT_DIRECTION_RTL;
+    }
+
+    @Override
+    public boolean performClick() {
+        super.performClick();
+        if (mNames == null) {
+            // countries are still loading
+            return false;
+        }
+        new CountryPickerDialog(getContext(), mNames, new CountryPickerDialog.OnCountryPickedListener() {
+            @Override
+            public void onCountryPicked(Country country) {
+                setSelectedCountry(country);
+            }
+        }).show();
+        return true;
+    }
+}
@@ -2,19 +2,52 @@ package com.urbancups.countryflags;
 
 import android.content.Context;
 import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.widget.TextView;
 
-import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Created by jonathanmoskovich on 10/02/2016.
+ * <p/>
+ * Typefaces from the assets, created once per process. Lookups don't lock, and
+ * {@link #apply(TextView, String)} creates missing typefaces on a background thread, so the views
+ * using them don't block the UI thread while being inflated.
  */
 public class FontCache {
 
-    private static Hashtable<String, Typeface> fontCache = new Hashtable<String, Typeface>();
+    static final String LATO_REGULAR = "LatoRegular.ttf";
 
+    private static final ConcurrentHashMap<String, Typeface> fontCache = new ConcurrentHashMap<>();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "FontCache");
+        }
+    });
+
+    /**
+     * Returns the typeface, creating it on the calling thread if it isn't cached.
+     *
+     * @return the typeface, or null if the asset can't be read
+     */
     public static Typeface get(String name, Context context) {
 
-                Typeface tf = fontCache.get(name);
+        Typeface tf = fontCache.get(name);
         if(tf == null) {
             try {
                 tf = Typeface.createFromAsset(context.getAssets(), name);
@@ -22,8 +55,43 @@ public class FontCache {
             catch (Exception e) {
                 return null;
             }
-            fontCache.put(name, tf);
+            Typeface previous = fontCache.putIfAbsent(name, tf);
+            if (previous != null) {
+                tf = previous;
+            }
         }
         return tf;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets the typeface on <code>view</code>, right away if it is cached, otherwise once it is
+     * created on a background thread. Must be called on the UI thread; the latest call for a view
+     * wins.
+     */
+    public static void apply(final TextView view, final String name) {
+        Typeface tf = fontCache.get(name);
+        view.setTag(R.id.font_cache_name, name);
+        if (tf != null) {
+            view.setTypeface(tf);
+            return;
+        }
+        final Context context = view.getContext().getApplicationContext();
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Typeface tf = get(name, context);
+                if (tf == null) {
+                    return;
+                }
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (name.equals(view.getTag(R.id.font_cache_name))) {
+                            view.setTypeface(tf);
+                        }
+                    }
+                });
+            }
+        });
+    }
+}
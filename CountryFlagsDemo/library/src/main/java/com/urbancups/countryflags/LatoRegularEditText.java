@@ -29,10 +29,10 @@ public class LatoRegularEditText extends EditText {
 
     private void init() {
         if (this.isInEditMode()) return;
-        this.setTypeface(FontCache.get("LatoRegular.ttf", context));
+        FontCache.apply(this, FontCache.LATO_REGULAR);
     }
 
     public void setTextBold() {
-        this.setTypeface(FontCache.get("LatoRegular.ttf", context));
+        FontCache.apply(this, FontCache.LATO_REGULAR);
     }
 }
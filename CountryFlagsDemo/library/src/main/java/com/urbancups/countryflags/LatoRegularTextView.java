@@ -21,7 +21,7 @@ public class LatoRegularTextView extends TextView {
 
     private void init(Context context) {
         if (this.isInEditMode()) return;
-        this.setTypeface(FontCache.get("LatoRegular.ttf", context));
+        FontCache.apply(this, FontCache.LATO_REGULAR);
     }
 
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * Draws a text {@link Layout} built ahead of time, so that binding the view only assigns it. When
+ * given plain text instead, the view lays it out while measuring, as a <code>TextView</code>
+ * would. Reads <code>android:textAppearance</code>, <code>android:textSize</code> and
+ * <code>android:textColor</code>, with the defaults of a <code>TextView</code>.
+ */
+public class LayoutTextView extends View {
+
+    /**
+     * The text size of a <code>TextView</code> whose theme sets none.
+     */
+    private static final float DEFAULT_TEXT_SIZE_SP = 14;
+
+    private final TextPaint mPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private CharSequence mText = "";
+    private Layout mLayout;
+
+    public LayoutTextView(Context context) {
+        this(context, null);
+    }
+
+    public LayoutTextView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        TextAppearance appearance = TextAppearance.read(context, attrs, android.R.attr.textViewStyle, DEFAULT_TEXT_SIZE_SP);
+        mPaint.setTextSize(appearance.mTextSize);
+        mPaint.setColor(appearance.mTextColors.getDefaultColor());
+        mPaint.density = context.getResources().getDisplayMetrics().density;
+    }
+
+    /**
+     * The paint plain text is laid out with, as read from the attributes of the view.
+     */
+    public TextPaint getPaint() {
+        return mPaint;
+    }
+
+    /**
+     * Shows <code>layout</code>. When the view wraps its content, it takes the width of the layout.
+     */
+    public void setTextLayout(Layout layout) {
+        if (layout == mLayout) {
+            return;
+        }
+        Layout old = mLayout;
+        mText = layout.getText();
+        mLayout = layout;
+        if (old == null || old.getWidth() != layout.getWidth() || old.getHeight() != layout.getHeight()) {
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    /**
+     * Shows <code>text</code>, laid out with {@link #getPaint()} on the next measure.
+     */
+    public void setText(CharSequence text) {
+        mText = text == null ? "" : text;
+        mLayout = null;
+        requestLayout();
+        invalidate();
+    }
+
+    public CharSequence getText() {
+        return mText;
+    }
+
+    @Override
+    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+        super.onPopulateAccessibilityEvent(event);
+        if (mText.length() > 0) {
+            event.getText().add(mText);
+        }
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setText(mText);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int horizontalPadding = getPaddingLeft() + getPaddingRight();
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int widthSize = MeasureSpec.getSize(widthMeasureSpec) - horizontalPadding;
+
+        int width;
+        if (widthMode == MeasureSpec.EXACTLY) {
+            width = widthSize;
+        } else {
+            width = mLayout != null ? mLayout.getWidth() : (int) Math.ceil(Layout.getDesiredWidth(mText, mPaint));
+            if (widthMode == MeasureSpec.AT_MOST) {
+                width = Math.min(width, widthSize);
+            }
+        }
+        width = Math.max(0, width);
+        if (mLayout == null || mLayout.getWidth() != width) {
+            // not built ahead of time, or for another width
+            mLayout = new StaticLayout(mText, mPaint, width, Layout.Alignment.ALIGN_NORMAL, 1, 0, true);
+        }
+
+        setMeasuredDimension(
+                resolveSize(horizontalPadding + width, widthMeasureSpec),
+                resolveSize(getPaddingTop() + getPaddingBottom() + mLayout.getHeight(), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mLayout == null) {
+            return;
+        }
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        mLayout.draw(canvas);
+        canvas.restore();
+    }
+}
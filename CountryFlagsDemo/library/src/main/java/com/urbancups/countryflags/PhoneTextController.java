@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.text.InputFilter;
+import android.text.Selection;
+import android.text.Spanned;
+import android.view.inputmethod.EditorInfo;
+import android.widget.EditText;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+/**
+ * The phone field of the components: filters what can be typed into it, formats the number as
+ * it is typed, and reports every formatted number to a {@link OnPhoneChangedListener}.
+ */
+final class PhoneTextController {
+
+    private final EditText mPhoneEdit;
+    private final OnPhoneChangedListener mListener;
+    private final CustomPhoneNumberFormattingTextWatcher mWatcher;
+
+    /**
+     * Parses bound numbers, null for the default instance.
+     */
+    private PhoneNumberUtil mPhoneNumberUtil;
+
+    /**
+     * Indicates the text is being changed by modifyEditText(), which the input filter must let through.
+     */
+    private boolean mSelfChange;
+
+    private final OnPhoneChangedListener mOnPhoneChangedListener = new OnPhoneChangedListener() {
+        @Override
+        public void onPhoneChanged(String phone) {
+
+            Tracer.d("onPhoneChanged with %s", phone);
+            modifyEditText(phone);
+
+            mListener.onPhoneChanged(phone);
+        }
+    };
+
+    private final PhoneTextEdits.Field mField = new PhoneTextEdits.Field() {
+        @Override
+        public CharSequence getText() {
+            return mPhoneEdit.getText();
+        }
+
+        @Override
+        public int getSelectionEnd() {
+            return Selection.getSelectionEnd(mPhoneEdit.getText());
+        }
+
+        @Override
+        public void replace(int start, int end, CharSequence source, int sourceStart, int sourceEnd) {
+            mSelfChange = true;
+            try {
+                mPhoneEdit.getText().replace(start, end, source, sourceStart, sourceEnd);
+            } finally {
+                mSelfChange = false;
+            }
+        }
+
+        @Override
+        public void setSelection(int position) {
+            Selection.setSelection(mPhoneEdit.getText(), position);
+        }
+    };
+
+    private final InputFilter mInputFilter = new InputFilter() {
+        public CharSequence filter(CharSequence source, int start, int end,
+                                   Spanned dest, int dstart, int dend) {
+            if (mSelfChange || PhoneTextEdits.accepts(source, start, end, dstart)) {
+                return null;
+            }
+            return "";
+        }
+    };
+
+    PhoneTextController(EditText phoneEdit, OnPhoneChangedListener listener) {
+        mPhoneEdit = phoneEdit;
+        mListener = listener;
+        mWatcher = new CustomPhoneNumberFormattingTextWatcher(mOnPhoneChangedListener);
+
+        mPhoneEdit.addTextChangedListener(mWatcher);
+        mPhoneEdit.setFilters(new InputFilter[]{mInputFilter});
+        mPhoneEdit.setImeOptions(EditorInfo.IME_ACTION_SEND);
+        mPhoneEdit.setImeActionLabel(mPhoneEdit.getContext().getString(R.string.action_send),
+                EditorInfo.IME_ACTION_SEND);
+    }
+
+    /**
+     * Formats with the metadata of <code>phoneNumberUtil</code>, see
+     * {@link CustomPhoneNumberFormattingTextWatcher#setPhoneNumberUtil(PhoneNumberUtil)}.
+     */
+    void setPhoneNumberUtil(PhoneNumberUtil phoneNumberUtil) {
+        mPhoneNumberUtil = phoneNumberUtil;
+        mWatcher.setPhoneNumberUtil(phoneNumberUtil);
+    }
+
+    /**
+     * Puts back text saved by a component, without filtering, formatting or reporting it: all of
+     * that happened before it was saved.
+     */
+    void restoreText(CharSequence text, int selection) {
+        mPhoneEdit.removeTextChangedListener(mWatcher);
+        mSelfChange = true;
+        try {
+            mPhoneEdit.setText(text);
+        } finally {
+            mSelfChange = false;
+            mPhoneEdit.addTextChangedListener(mWatcher);
+        }
+        mPhoneEdit.setSelection(Math.max(0, Math.min(selection, mPhoneEdit.length())));
+    }
+
+    /**
+     * Replaces the text with the national number of <code>number</code>, formatted from scratch by
+     * the same formatter and reported like typed text, for a component bound to a new number. The
+     * calling code and the national prefix are dropped, and what is left goes through the input
+     * filter, so the field holds what typing could have entered.
+     *
+     * @param number a national number of <code>region</code>, or an international one
+     * @param region the region national numbers are dialled in, e.g. "GB"
+     * @return the region of <code>number</code> if its calling code isn't the one of
+     * <code>region</code>, otherwise null
+     */
+    String bindText(CharSequence number, String region) {
+        restoreText("", 0);
+        mWatcher.reset();
+
+        PhoneNumberUtil util = mPhoneNumberUtil != null ? mPhoneNumberUtil : PhoneNumberUtil.getInstance();
+        String national = number.toString();
+        String numberRegion = null;
+        if (national.length() > 0) {
+            try {
+                Phonenumber.PhoneNumber parsed = util.parse(national, region);
+                national = util.getNationalSignificantNumber(parsed);
+                if (parsed.getCountryCode() != util.getCountryCodeForRegion(region)) {
+                    numberRegion = util.getRegionCodeForNumber(parsed);
+                    if (numberRegion == null || PhoneNumberUtil.REGION_CODE_FOR_NON_GEO_ENTITY.equals(numberRegion)) {
+                        numberRegion = util.getRegionCodeForCountryCode(parsed.getCountryCode());
+                    }
+                }
+            } catch (NumberParseException e) {
+                // not a number, keep what typing would have kept
+            }
+        }
+
+        StringBuilder dialable = new StringBuilder(national.length());
+        for (int i = 0; i < national.length(); i++) {
+            if (PhoneTextEdits.accepts(national, i, i + 1, dialable.length())) {
+                dialable.append(national.charAt(i));
+            }
+        }
+        mPhoneEdit.setText(dialable);
+        mPhoneEdit.setSelection(mPhoneEdit.length());
+        return numberRegion;
+    }
+
+    /**
+     * Replaces the text of the phone field with <code>newText</code>, touching only the range that
+     * differs. The cursor stays behind the same dialable char it was behind before.
+     */
+    private void modifyEditText(String newText) {
+        PhoneTextEdits.writeBack(mField, newText);
+    }
+}
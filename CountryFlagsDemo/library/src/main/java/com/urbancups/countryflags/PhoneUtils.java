@@ -15,20 +15,23 @@
  */
 package com.urbancups.countryflags;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.os.Build;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
 import android.text.TextUtils;
 
-import com.google.i18n.phonenumbers.NumberParseException;
-import com.google.i18n.phonenumbers.PhoneNumberUtil;
-import com.google.i18n.phonenumbers.Phonenumber;
+import java.util.List;
 
 public class PhoneUtils {
 
 
     /**
-     * Returns the countrycode (e.g. "US") for the user's phone
+     * Returns the countrycode (e.g. "US") for the user's phone. Queries telephony on every call, use
+     * {@link RegionProvider} for the cached value.
      *
      * @param mContext the app context
      * @return String representing the user's countrycode
@@ -42,22 +45,27 @@ public class PhoneUtils {
 
             String mCountryCode = null;
 
+            // with several SIMs, the first one in slot order that tells its country wins
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
+                mCountryCode = getCountryRegionFromSubscriptions(mContext);
+            }
+
             // if we have read_phone_state then we can use the telephonyManager method to get the countrycode
             TelephonyManager mTelephonyManager = (TelephonyManager) mContext.getSystemService(Context.TELEPHONY_SERVICE);
 
-            if (mTelephonyManager != null) {
+            if (mCountryCode == null && mTelephonyManager != null) {
                 String str = mTelephonyManager.getLine1Number();
-                if (!TextUtils.isEmpty(str) && !str.matches("^0*$")) {
-                    mCountryCode = parseNumber(str);
+                if (isLineNumber(str)) {
+                    mCountryCode = PhoneNumbers.getRegionForNumber(str);
                 }
 
-                if (mCountryCode == null) {
+                if (TextUtils.isEmpty(mCountryCode)) {
                     mCountryCode = mTelephonyManager.getNetworkCountryIso();
                 }
 
             }
 
-            if (mCountryCode == null) {
+            if (TextUtils.isEmpty(mCountryCode)) {
                 return mContext.getResources().getConfiguration().locale.getCountry().toUpperCase();
             } else {
                 return mCountryCode.toUpperCase();
@@ -68,28 +76,41 @@ public class PhoneUtils {
 
     }
 
-    /**
-     * Parse the user's phone number to get their countrycode
-     * @param usersPhoneNumber
-     * @return
-     */
-    private static String parseNumber(String usersPhoneNumber) {
-        if (usersPhoneNumber == null) {
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP_MR1)
+    private static String getCountryRegionFromSubscriptions(Context context) {
+        List<SubscriptionInfo> subscriptions = SubscriptionManager.from(context).getActiveSubscriptionInfoList();
+        if (subscriptions == null) {
             return null;
         }
-        PhoneNumberUtil numberUtil = PhoneNumberUtil.getInstance();
-        String result;
-        try {
-            Phonenumber.PhoneNumber localPhoneNumber = numberUtil.parse(usersPhoneNumber, null);
-            result = numberUtil.getRegionCodeForNumber(localPhoneNumber);
-            if (result == null) {
-                return null;
+        String countryIso = null;
+        for (SubscriptionInfo subscription : subscriptions) {
+            String number = subscription.getNumber();
+            if (isLineNumber(number)) {
+                String region = PhoneNumbers.getRegionForNumber(number);
+                if (region != null) {
+                    return region;
+                }
+            }
+            if (countryIso == null && !TextUtils.isEmpty(subscription.getCountryIso())) {
+                countryIso = subscription.getCountryIso();
             }
-        } catch (NumberParseException localNumberParseException) {
-            return null;
         }
-        return result;
+        return countryIso;
     }
 
+    /**
+     * @return false for an empty line number or one made of zeros, which some carriers report
+     */
+    private static boolean isLineNumber(String number) {
+        if (TextUtils.isEmpty(number)) {
+            return false;
+        }
+        for (int i = 0; i < number.length(); i++) {
+            if (number.charAt(i) != '0') {
+                return true;
+            }
+        }
+        return false;
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.AsyncTask;
+
+import java.util.Locale;
+
+/**
+ * The region of the user, e.g. "US", resolved once by
+ * {@link PhoneUtils#getCountryRegionFromPhone(Context)} and cached for the process.
+ * <p/>
+ * Resolving queries telephony, so only background threads resolve, with {@link #getRegion()}, as
+ * {@link CountryLoader} does. The UI thread reads {@link #getCachedRegion()}, which never blocks.
+ * When the locale changes or a SIM is inserted, removed or swapped, the region is resolved again
+ * in the background, and the previous one is served until then.
+ */
+final class RegionProvider {
+
+    /**
+     * <code>TelephonyIntents.ACTION_SIM_STATE_CHANGED</code>, sent for every SIM slot. Not part
+     * of the public SDK.
+     */
+    private static final String ACTION_SIM_STATE_CHANGED = "android.intent.action.SIM_STATE_CHANGED";
+
+    private static final Object sLock = new Object();
+    private static volatile RegionProvider sInstance;
+
+    private final Context mContext;
+    private volatile String mRegion;
+
+    /**
+     * Bumped by every invalidation, so a region resolved before it isn't cached after it.
+     */
+    private int mGeneration;
+
+    /**
+     * The generation a background resolve was started for, so reads before it ends don't start more.
+     */
+    private int mResolvingGeneration = -1;
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // the SIM state broadcast is sticky, its last value arrives right after registering
+            if (!isInitialStickyBroadcast()) {
+                Tracer.d("RegionProvider invalidated by %s", intent.getAction());
+                invalidate();
+            }
+        }
+    };
+
+    private RegionProvider(Context context) {
+        mContext = context;
+    }
+
+    public static RegionProvider getInstance(Context context) {
+        RegionProvider provider = sInstance;
+        if (provider == null) {
+            synchronized (sLock) {
+                provider = sInstance;
+                if (provider == null) {
+                    provider = new RegionProvider(context.getApplicationContext());
+                    IntentFilter filter = new IntentFilter(Intent.ACTION_LOCALE_CHANGED);
+                    filter.addAction(ACTION_SIM_STATE_CHANGED);
+                    provider.mContext.registerReceiver(provider.mReceiver, filter);
+                    sInstance = provider;
+                }
+            }
+        }
+        return provider;
+    }
+
+    /**
+     * @return the region of the user, resolving it on the calling thread if it isn't cached. Not
+     * for the UI thread, see {@link #getCachedRegion()}.
+     */
+    public String getRegion() {
+        String region = mRegion;
+        if (region != null) {
+            return region;
+        }
+        int generation;
+        synchronized (this) {
+            generation = mGeneration;
+        }
+        region = PhoneUtils.getCountryRegionFromPhone(mContext);
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mRegion = region;
+            }
+        }
+        return region;
+    }
+
+    /**
+     * @return the cached region, or null if it isn't resolved yet
+     */
+    public String peekRegion() {
+        return mRegion;
+    }
+
+    /**
+     * For the UI thread: never queries telephony. Before the region is first resolved, starts
+     * resolving it in the background.
+     *
+     * @return the cached region, or the region of the default locale if it isn't resolved yet
+     */
+    public String getCachedRegion() {
+        String region = mRegion;
+        if (region != null) {
+            return region;
+        }
+        resolveInBackground();
+        return Locale.getDefault().getCountry().toUpperCase(Locale.US);
+    }
+
+    /**
+     * Resolves the region again in the background, serving the previous one until then.
+     */
+    void invalidate() {
+        synchronized (this) {
+            mGeneration++;
+        }
+        resolveInBackground();
+    }
+
+    private void resolveInBackground() {
+        final int generation;
+        synchronized (this) {
+            if (mResolvingGeneration == mGeneration) {
+                return;
+            }
+            generation = mGeneration;
+            mResolvingGeneration = generation;
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                String region = PhoneUtils.getCountryRegionFromPhone(mContext);
+                synchronized (RegionProvider.this) {
+                    if (generation == mGeneration) {
+                        mRegion = region;
+                    }
+                }
+            }
+        });
+    }
+}
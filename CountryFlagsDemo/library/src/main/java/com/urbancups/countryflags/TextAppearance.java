@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+
+/**
+ * The text size and color a view is given with <code>android:textAppearance</code>, overridden by
+ * <code>android:textSize</code> and <code>android:textColor</code>, for views drawing text without
+ * being a <code>TextView</code>.
+ */
+final class TextAppearance {
+
+    /**
+     * Sorted by attribute id, as obtainStyledAttributes() expects.
+     */
+    private static final int[] ATTRS = {android.R.attr.textAppearance, android.R.attr.textSize, android.R.attr.textColor};
+    private static final int[] APPEARANCE_ATTRS = {android.R.attr.textSize, android.R.attr.textColor};
+
+    /**
+     * In pixels, sizes in sp come scaled by the user's font scale.
+     */
+    final float mTextSize;
+    final ColorStateList mTextColors;
+
+    private TextAppearance(float textSize, ColorStateList textColors) {
+        mTextSize = textSize;
+        mTextColors = textColors;
+    }
+
+    /**
+     * @param defStyleAttr  the theme attribute of the view's default style, or 0
+     * @param defaultSizeSp the text size if neither the style nor the view sets one
+     * @return the appearance, its color the theme's <code>textColorPrimary</code> if none is set
+     */
+    static TextAppearance read(Context context, AttributeSet attrs, int defStyleAttr, float defaultSizeSp) {
+        TypedArray a = context.obtainStyledAttributes(attrs, ATTRS, defStyleAttr, 0);
+        int appearance = a.getResourceId(0, 0);
+        float size = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, defaultSizeSp,
+                context.getResources().getDisplayMetrics());
+        ColorStateList colors = null;
+        if (appearance != 0) {
+            TypedArray b = context.obtainStyledAttributes(appearance, APPEARANCE_ATTRS);
+            size = b.getDimension(0, size);
+            colors = b.getColorStateList(1);
+            b.recycle();
+        }
+        // set on the view itself, over its appearance
+        size = a.getDimension(1, size);
+        if (a.hasValue(2)) {
+            colors = a.getColorStateList(2);
+        }
+        a.recycle();
+        return new TextAppearance(size, colors != null ? colors : ColorStateList.valueOf(getDefaultTextColor(context)));
+    }
+
+    /**
+     * The color of text drawn with the theme's <code>textColorPrimary</code>, black if it has none.
+     */
+    private static int getDefaultTextColor(Context context) {
+        TypedArray a = context.obtainStyledAttributes(new int[]{android.R.attr.textColorPrimary});
+        ColorStateList colors = a.getColorStateList(0);
+        a.recycle();
+        return colors != null ? colors.getDefaultColor() : 0xff000000;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2014-2015 Amberfog.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.urbancups.countryflags;
+
+import android.os.Build;
+import android.os.Trace;
+
+import timber.log.Timber;
+
+/**
+ * Debug logging and systrace sections of the library, compiled out unless the library is built
+ * with <code>-PtraceComponent=true</code>.
+ * <p/>
+ * {@link #ENABLED} is a compile-time constant, so with tracing off the bodies below are empty and
+ * calls cost nothing: messages are constant format strings and arguments are passed unboxed, so no
+ * string is built and nothing is allocated. Don't concatenate strings at the call sites.
+ * <p/>
+ * Warnings, see {@link #w}, are logged in every build.
+ * <p/>
+ * Sections show up in systrace under the names below. {@link #begin} and {@link #end} must be
+ * called on the same thread, the end in a <code>finally</code>.
+ */
+final class Tracer {
+
+    static final boolean ENABLED = BuildConfig.TRACE;
+
+    static final String SECTION_LOAD_COUNTRIES = "CountryFlags:loadCountries";
+    static final String SECTION_LOAD_NAMES = "CountryFlags:loadNames";
+    static final String SECTION_LOAD_ATLAS = "CountryFlags:loadAtlas";
+    static final String SECTION_DECODE_FLAG = "CountryFlags:decodeFlag";
+    static final String SECTION_FORMAT = "CountryFlags:format";
+    static final String SECTION_DETECT = "CountryFlags:detect";
+    static final String SECTION_BIND = "CountryFlags:bind";
+    static final String SECTION_BIND_DROPDOWN = "CountryFlags:bindDropDown";
+
+    private Tracer() {
+    }
+
+    static void begin(String section) {
+        if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(section);
+        }
+    }
+
+    static void end() {
+        if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    static void d(String message) {
+        if (ENABLED) {
+            Timber.d(message);
+        }
+    }
+
+    static void d(String format, int arg) {
+        if (ENABLED) {
+            Timber.d(format, arg);
+        }
+    }
+
+    static void d(String format, Object arg) {
+        if (ENABLED) {
+            Timber.d(format, arg);
+        }
+    }
+
+    /**
+     * Logs a warning, also when tracing is off. For failures only: the argument is boxed here.
+     */
+    static void w(String format, int arg) {
+        Timber.w(format, arg);
+    }
+}
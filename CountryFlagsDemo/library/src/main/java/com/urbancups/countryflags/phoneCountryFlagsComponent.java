@@ -17,14 +17,11 @@
 package com.urbancups.countryflags;
 
 import android.content.Context;
-import android.os.AsyncTask;
-import android.text.InputFilter;
-import android.text.Spanned;
-import android.text.TextUtils;
+import android.content.res.TypedArray;
+import android.os.Parcelable;
 import android.util.AttributeSet;
 import android.util.SparseArray;
 import android.view.View;
-import android.view.inputmethod.EditorInfo;
 import android.widget.AdapterView;
 import android.widget.EditText;
 import android.widget.LinearLayout;
@@ -35,170 +32,368 @@ import com.google.i18n.phonenumbers.NumberParseException;
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
 import com.google.i18n.phonenumbers.Phonenumber;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.TreeSet;
-
-import timber.log.Timber;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.Future;
 
 public class PhoneCountryFlagsComponent extends LinearLayout {
 
-    private static final TreeSet<String> CANADA_CODES = new TreeSet<>();
+    public interface OnPrewarmedListener {
+
+        /**
+         * Called on the UI thread when {@link #prewarm(Context)} is done, even if some of it failed.
+         */
+        void onPrewarmed();
+
+    }
+
     private Context mContext;
 
-    static {
-        CANADA_CODES.add("204");
-        CANADA_CODES.add("236");
-        CANADA_CODES.add("249");
-        CANADA_CODES.add("250");
-        CANADA_CODES.add("289");
-        CANADA_CODES.add("306");
-        CANADA_CODES.add("343");
-        CANADA_CODES.add("365");
-        CANADA_CODES.add("387");
-        CANADA_CODES.add("403");
-        CANADA_CODES.add("416");
-        CANADA_CODES.add("418");
-        CANADA_CODES.add("431");
-        CANADA_CODES.add("437");
-        CANADA_CODES.add("438");
-        CANADA_CODES.add("450");
-        CANADA_CODES.add("506");
-        CANADA_CODES.add("514");
-        CANADA_CODES.add("519");
-        CANADA_CODES.add("548");
-        CANADA_CODES.add("579");
-        CANADA_CODES.add("581");
-        CANADA_CODES.add("587");
-        CANADA_CODES.add("604");
-        CANADA_CODES.add("613");
-        CANADA_CODES.add("639");
-        CANADA_CODES.add("647");
-        CANADA_CODES.add("672");
-        CANADA_CODES.add("705");
-        CANADA_CODES.add("709");
-        CANADA_CODES.add("742");
-        CANADA_CODES.add("778");
-        CANADA_CODES.add("780");
-        CANADA_CODES.add("782");
-        CANADA_CODES.add("807");
-        CANADA_CODES.add("819");
-        CANADA_CODES.add("825");
-        CANADA_CODES.add("867");
-        CANADA_CODES.add("873");
-        CANADA_CODES.add("902");
-        CANADA_CODES.add("905");
-    }
-
-    final private SparseArray<ArrayList<Country>> mCountriesMap = new SparseArray<>();
-    final private PhoneNumberUtil mPhoneNumberUtil = PhoneNumberUtil.getInstance();
+    /**
+     * The regions the component is limited to, null for all of them.
+     */
+    private RegionAllowlist mAllowlist;
     private CustomSpinner mSpinner;
     private EditText mPhoneEdit;
     private CountryAdapter mAdapter;
+    private Country mSelectedCountry;
     private TextView mCountryCode;
-    private CustomPhoneNumberFormattingTextWatcher mCustomPhoneNumberFormattingTextWatcher;
-    private InputFilter mInputFilter;
+    private PhoneTextController mPhoneTextController;
     private View mRootView;
 
+    /**
+     * The countries being loaded, null once they are shown.
+     */
+    private CountryLoader mLoader;
+
+    /**
+     * Loading was cancelled when the component was detached, and starts again when it is attached.
+     */
+    private boolean mReloadOnAttach;
+
+    /**
+     * The country restored from a saved state, or bound, before the countries were loaded: its
+     * number, or -1, or its region, or null.
+     */
+    private int mPendingCountryNum = -1;
+    private String mPendingRegion;
+
+    /**
+     * A number is being bound with its country, which detection must not override.
+     */
+    private boolean mBinding;
+
     final private AdapterView.OnItemSelectedListener mOnItemSelectedListener = new AdapterView.OnItemSelectedListener() {
         @Override
         public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
 
-            Timber.d("onItemSelected");
+            Tracer.d("onItemSelected");
 
             Country c = (Country) mSpinner.getItemAtPosition(position);
+            mSelectedCountry = c;
             mCountryCode.setText(mContext.getString(R.string.countryCode, String.valueOf(c.getCountryCode())));
 
         }
 
         @Override
         public void onNothingSelected(AdapterView<?> parent) {
-            Timber.d("onNothingSelected");
+            Tracer.d("onNothingSelected");
         }
     };
 
     private final OnPhoneChangedListener mOnPhoneChangedListener = new OnPhoneChangedListener() {
         @Override
         public void onPhoneChanged(String phone) {
+            if (mAdapter.isEmpty() || mBinding) {
+                // countries are still loading, or the country is given
+                return;
+            }
+            mCountryDetector.detect(phone, mSelectedCountry);
+        }
+    };
 
-            Timber.d("onPhoneChanged with " + phone);
-            modifyEditText(phone);
-
-            try {
-                Phonenumber.PhoneNumber p = mPhoneNumberUtil.parse(phone, null);
-                ArrayList<Country> list = mCountriesMap.get(p.getCountryCode());
-                Country country = null;
-                if (list != null) {
-                    if (p.getCountryCode() == 1) {
-                        String num = String.valueOf(p.getNationalNumber());
-                        if (num.length() >= 3) {
-                            String code = num.substring(0, 3);
-                            if (CANADA_CODES.contains(code)) {
-                                for (Country c : list) {
-                                    // Canada has priority 1, US has priority 0
-                                    if (c.getPriority() == 1) {
-                                        country = c;
-                                        break;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    if (country == null) {
-                        for (Country c : list) {
-                            if (c.getPriority() == 0) {
-                                country = c;
-                                break;
-                            }
-                        }
-                    }
-                }
-                if (country != null) {
-                    final int position = country.getNum();
-                    mSpinner.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            mSpinner.setSelection(position);
-                        }
-                    });
-                }
-            } catch (NumberParseException ignore) {
+    private final CountryDetector.OnCountryDetectedListener mOnCountryDetectedListener = new CountryDetector.OnCountryDetectedListener() {
+        @Override
+        public void onCountryDetected(Country country) {
+            int position = mAdapter.getPosition(country);
+            // a country outside the allowlist isn't listed
+            if (country != mSelectedCountry && position >= 0) {
+                mSpinner.setSelection(position);
             }
+        }
+    };
+
+    private final CountryDetector mCountryDetector = new CountryDetector(mOnCountryDetectedListener);
+
+    private final CountryLoader.Callback mOnCountriesLoaded = new CountryLoader.Callback() {
+        @Override
+        public void onCountriesLoaded(CountryNames names, Country defaultCountry) {
+
+            Tracer.d("onCountriesLoaded country was %s", defaultCountry);
+
+            mLoader = null;
+            setCountryNames(names);
 
+            // a restored or bound country wins over the one of the user's region
+            Country country = defaultCountry;
+            Country pending = getPendingCountry();
+            mPendingCountryNum = -1;
+            mPendingRegion = null;
+            if (pending != null && names.getPosition(pending) >= 0) {
+                country = pending;
+            }
+            if (country != null && names.getPosition(country) >= 0) {
+                mSpinner.setSelection(names.getPosition(country));
+            }
+        }
+    };
+
+    private final View.OnClickListener mOnOpenPickerListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            CountryNames names = mAdapter.getCountryNames();
+            if (names == null) {
+                // countries are still loading
+                return;
+            }
+            new CountryPickerDialog(mContext, names, new CountryPickerDialog.OnCountryPickedListener() {
+                @Override
+                public void onCountryPicked(Country country) {
+                    mSpinner.setSelection(mAdapter.getPosition(country));
+                }
+            }).show();
         }
     };
 
+    /**
+     * Starts loading on a background thread what the component needs to render fully, so that
+     * inflating it doesn't block the UI thread. Call it early, e.g. from
+     * <code>Application.onCreate()</code>, with a context whose configuration the components share.
+     * Only the first call starts loading.
+     *
+     * @return a future done when loading is done; components created before it still work, they
+     * just load the rest on their own
+     */
+    public static Future<Void> prewarm(Context context) {
+        return ComponentPrewarmer.prewarm(context, null, null);
+    }
+
+    /**
+     * Like {@link #prewarm(Context)}, and calls <code>listener</code> on the UI thread when done.
+     */
+    public static Future<Void> prewarm(Context context, OnPrewarmedListener listener) {
+        return ComponentPrewarmer.prewarm(context, null, listener);
+    }
+
+    /**
+     * Like {@link #prewarm(Context, OnPrewarmedListener)}, for components limited to
+     * <code>regions</code>, see {@link #setRegions(Collection)}. Only the first call per set of
+     * regions starts loading.
+     *
+     * @param listener called on the UI thread when done, or null
+     */
+    public static Future<Void> prewarm(Context context, Collection<String> regions, OnPrewarmedListener listener) {
+        return ComponentPrewarmer.prewarm(context, regions == null ? null : RegionAllowlist.of(regions), listener);
+    }
+
     public PhoneCountryFlagsComponent(Context context) {
         super(context);
 
-        Timber.d("first constructor");
+        Tracer.d("first constructor");
 
-        initViewGroup(context);
+        initViewGroup(context, null);
     }
 
     public PhoneCountryFlagsComponent(Context context, AttributeSet attrs) {
         super(context, attrs);
 
-        Timber.d("second constructor");
+        Tracer.d("second constructor");
 
-        initViewGroup(context);
+        initViewGroup(context, attrs);
     }
 
     public PhoneCountryFlagsComponent(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
 
-        Timber.d("third constructor");
+        Tracer.d("third constructor");
+
+        initViewGroup(context, attrs);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        if (mReloadOnAttach) {
+            mReloadOnAttach = false;
+            initCodes();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        mCountryDetector.cancel();
+        if (mLoader != null) {
+            mLoader.cancel();
+            mLoader = null;
+            mReloadOnAttach = true;
+        }
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        ComponentSavedState state = new ComponentSavedState(super.onSaveInstanceState());
+        Country country = mPendingCountryNum >= 0 || mPendingRegion != null ? getPendingCountry() : mSelectedCountry;
+        state.mCountryNum = country != null ? country.getNum() : -1;
+        state.mPhone = mPhoneEdit.getText().toString();
+        state.mSelection = mPhoneEdit.getSelectionEnd();
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof ComponentSavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        ComponentSavedState saved = (ComponentSavedState) state;
+        super.onRestoreInstanceState(saved.getSuperState());
+
+        mPhoneTextController.restoreText(saved.mPhone, saved.mSelection);
+        if (saved.mCountryNum < 0) {
+            return;
+        }
+        if (isLoading()) {
+            mPendingCountryNum = saved.mCountryNum;
+            mPendingRegion = null;
+        } else {
+            selectCountry(CountryRegistry.getInstance().getCountries().get(saved.mCountryNum));
+        }
+    }
+
+    /**
+     * Shows <code>number</code> with the country of <code>region</code> selected. Meant for a
+     * component reused for another value, e.g. in a <code>RecyclerView</code> row being bound:
+     * nothing is inflated or loaded again, and the formatter is reused. The number is formatted as
+     * if it was typed.
+     *
+     * @param region the region code of the country to select, e.g. "US", or null to detect it from
+     *               the number
+     * @param number a national number of the region, or an international one, whose country is
+     *               then selected instead, or null for none. Only its national number is shown.
+     */
+    public void bind(String region, CharSequence number) {
+
+        Tracer.d("bind %s", region);
+
+        mCountryDetector.cancel();
+        mPendingCountryNum = -1;
+        mPendingRegion = null;
+        if (region != null) {
+            region = region.toUpperCase(Locale.US);
+        }
+        mBinding = region != null;
+        String numberRegion;
+        try {
+            numberRegion = mPhoneTextController.bindText(number != null ? number : "",
+                    region != null ? region : RegionProvider.getInstance(mContext).getCachedRegion());
+        } finally {
+            mBinding = false;
+        }
+        if (numberRegion != null) {
+            // an international number of another country
+            region = numberRegion;
+        }
+        if (region == null) {
+            return;
+        }
+        if (isLoading()) {
+            mPendingRegion = region;
+        } else {
+            selectCountry(CountryRegistry.getInstance().getCountryForRegion(region));
+        }
+    }
+
+    /**
+     * Clears the number, and drops detection still running for it, e.g. when the component's
+     * <code>RecyclerView</code> row is recycled. The selected country stays until the next
+     * {@link #bind(String, CharSequence)}.
+     */
+    public void unbind() {
+        mCountryDetector.cancel();
+        mPendingCountryNum = -1;
+        mPendingRegion = null;
+        mPhoneTextController.restoreText("", 0);
+    }
+
+    /**
+     * Lists the countries with <code>adapter</code> instead of an adapter of its own, so that the
+     * components of a list share one, and with it the sorted countries and the text layouts of the
+     * dropdown rows. Flags are shared by all components anyway, see {@link FlagLoader}. Components
+     * sharing an adapter must be limited to the same regions.
+     */
+    public void setCountryAdapter(CountryAdapter adapter) {
+        if (adapter == mAdapter) {
+            return;
+        }
+        CountryNames names = mAdapter.getCountryNames();
+        mAdapter = adapter;
+        if (names == null) {
+            // set once loaded
+            return;
+        }
+        setCountryNames(names);
+        selectCountry(mSelectedCountry);
+    }
+
+    public CountryAdapter getCountryAdapter() {
+        return mAdapter;
+    }
+
+    /**
+     * @return whether the countries are still loading, or loading was cancelled on detach
+     */
+    private boolean isLoading() {
+        return mLoader != null || mReloadOnAttach || CountryRegistry.peek() == null;
+    }
+
+    private void selectCountry(Country country) {
+        int position = country == null ? -1 : mAdapter.getPosition(country);
+        if (position >= 0) {
+            mSpinner.setSelection(position);
+        }
+    }
 
-        initViewGroup(context);
+    /**
+     * @return the country restored or bound before the countries were loaded, or null
+     */
+    private Country getPendingCountry() {
+        CountryRegistry registry = CountryRegistry.getInstance();
+        return mPendingCountryNum >= 0 ? registry.getCountries().get(mPendingCountryNum)
+                : registry.getCountryForRegion(mPendingRegion);
+    }
+
+    /**
+     * The children's state is part of the component's, see {@link ComponentSavedState}: the
+     * spinner and the phone field don't save their own.
+     */
+    @Override
+    protected void dispatchSaveInstanceState(SparseArray<Parcelable> container) {
+        dispatchFreezeSelfOnly(container);
+    }
+
+    @Override
+    protected void dispatchRestoreInstanceState(SparseArray<Parcelable> container) {
+        dispatchThawSelfOnly(container);
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
 
-        Timber.d("onMeasure with getchildcount " +String.valueOf(getChildCount()));
+        Tracer.d("onMeasure with getchildcount %d", getChildCount());
 
         for(int i = 0 ; i < getChildCount() ; i++){
             getChildAt(i).measure(widthMeasureSpec, heightMeasureSpec);
@@ -208,7 +403,7 @@ public class PhoneCountryFlagsComponent extends LinearLayout {
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
 
-        Timber.d("onLayout with getchildcount " + String.valueOf(getChildCount()));
+        Tracer.d("onLayout with getchildcount %d", getChildCount());
 
         for(int i = 0 ; i < getChildCount() ; i++){
             getChildAt(i).layout(l, t, r, b);
@@ -216,9 +411,9 @@ public class PhoneCountryFlagsComponent extends LinearLayout {
 
     }
 
-    private void initViewGroup(Context context) {
+    private void initViewGroup(Context context, AttributeSet attrs) {
 
-        Timber.d("initViewGroup");
+        Tracer.d("initViewGroup");
 
         mContext = context;
 
@@ -227,15 +422,57 @@ public class PhoneCountryFlagsComponent extends LinearLayout {
         mRootView = getRootView();
 
         initUI();
+
+        if (attrs != null) {
+            TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.PhoneCountryFlagsComponent);
+            setSearchablePicker(a.getBoolean(R.styleable.PhoneCountryFlagsComponent_searchablePicker, false));
+            String regions = a.getString(R.styleable.PhoneCountryFlagsComponent_regions);
+            if (regions != null) {
+                applyAllowlist(RegionAllowlist.parse(regions));
+            }
+            a.recycle();
+        }
+
         initCodes();
     }
 
+    /**
+     * Limits the component to <code>regions</code>, e.g. "US", "CA" and "GB": only their countries
+     * are listed, only their metadata is loaded, and numbers of other regions don't validate. Can
+     * also be set with the <code>regions</code> attribute.
+     *
+     * @param regions ISO 3166-1 region codes, or null for all regions
+     */
+    public void setRegions(Collection<String> regions) {
+        RegionAllowlist allowlist = regions == null ? null : RegionAllowlist.of(regions);
+        if (allowlist != mAllowlist) {
+            applyAllowlist(allowlist);
+            initCodes();
+        }
+    }
+
+    private void applyAllowlist(RegionAllowlist allowlist) {
+        mAllowlist = allowlist;
+        mPhoneTextController.setPhoneNumberUtil(getPhoneNumberUtil());
+    }
+
+    private PhoneNumberUtil getPhoneNumberUtil() {
+        return mAllowlist == null ? PhoneNumberUtil.getInstance() : mAllowlist.getPhoneNumberUtil();
+    }
+
+    /**
+     * Lets the user pick the country from a searchable list ({@link CountryPickerDialog}) instead
+     * of the spinner dropdown. Can also be set with the <code>searchablePicker</code> attribute.
+     */
+    public void setSearchablePicker(boolean searchable) {
+        mSpinner.setOnOpenListener(searchable ? mOnOpenPickerListener : null);
+    }
+
     private void initUI() {
 
-        Timber.d("initUI");
+        Tracer.d("initUI");
 
         LinearLayout spinnerContainer = (LinearLayout) mRootView.findViewById(R.id.flagsFragment_flagsSpinnerContainer);
-        mCustomPhoneNumberFormattingTextWatcher = new CustomPhoneNumberFormattingTextWatcher(mOnPhoneChangedListener);
         mSpinner = (CustomSpinner) mRootView.findViewById(R.id.flagsFragment_flagsSpinner);
         mSpinner.setOnItemSelectedEvenIfUnchangedListener(this.mOnItemSelectedListener);
 
@@ -253,33 +490,8 @@ public class PhoneCountryFlagsComponent extends LinearLayout {
         mCountryCode = (TextView) mRootView.findViewById(R.id.flagsFragment_countryCode);
         mPhoneEdit = (EditText) mRootView.findViewById(R.id.phone);
 
-        mPhoneEdit.addTextChangedListener(mCustomPhoneNumberFormattingTextWatcher);
-
-        mInputFilter = new InputFilter() {
-            public CharSequence filter(CharSequence source, int start, int end,
-                                       Spanned dest, int dstart, int dend) {
-                for (int i = start; i < end; i++) {
-                    char c = source.charAt(i);
-
-                    // don't allow a leading zero
-                    if (dstart == 0 && String.valueOf(c).equalsIgnoreCase("0")) {
-                        return "";
-                    }
+        mPhoneTextController = new PhoneTextController(mPhoneEdit, mOnPhoneChangedListener);
 
-                    if (dstart >= 0 && !Character.isDigit(c)) {
-                        return "";
-                    }
-
-                }
-
-                return null;
-            }
-        };
-
-        mPhoneEdit.setFilters(new InputFilter[]{mInputFilter});
-
-        mPhoneEdit.setImeOptions(EditorInfo.IME_ACTION_SEND);
-        mPhoneEdit.setImeActionLabel(mContext.getString(R.string.action_send), EditorInfo.IME_ACTION_SEND);
         /*mPhoneEdit.setOnEditorActionListener(new TextView.OnEditorActionListener() {
             @Override
             public boolean onEditorAction(TextView v, int actionId, KeyEvent event) {
@@ -294,86 +506,28 @@ public class PhoneCountryFlagsComponent extends LinearLayout {
 
     private void initCodes() {
 
-        Timber.d("initCodes");
-
-        new AsyncPhoneInitTask().execute();
-    }
-
-    class AsyncPhoneInitTask extends AsyncTask<Void, Void, ArrayList<Country>> {
-
-        private int mSpinnerPosition = -1;
+        Tracer.d("initCodes");
 
-        public AsyncPhoneInitTask() {
+        if (mLoader != null) {
+            // loading for other regions
+            mLoader.cancel();
         }
-
-        @Override
-        protected ArrayList<Country> doInBackground(Void... params) {
-
-            Timber.d("doInBackground");
-
-            final ArrayList<Country> data = new ArrayList<>(233);
-            BufferedReader reader = null;
-
-            try {
-                reader = new BufferedReader(new InputStreamReader(mContext.getApplicationContext().getAssets().open("countries.dat"), "UTF-8"));
-
-                // do reading, usually loop until end of file reading
-                String line;
-                int i = 0;
-                while ((line = reader.readLine()) != null) {
-                    //process line
-                    Country c = new Country(mContext, line, i);
-                    data.add(c);
-                    ArrayList<Country> list = mCountriesMap.get(c.getCountryCode());
-                    if (list == null) {
-                        list = new ArrayList<>();
-                        mCountriesMap.put(c.getCountryCode(), list);
-                    }
-                    list.add(c);
-                    i++;
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                if (reader != null) {
-                    try {
-                        reader.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-
-            String countryRegion = PhoneUtils.getCountryRegionFromPhone(mContext);
-            int code = mPhoneNumberUtil.getCountryCodeForRegion(countryRegion);
-            ArrayList<Country> list = mCountriesMap.get(code);
-            if (list != null) {
-                for (Country c : list) {
-                    if (c.getPriority() == 0) {
-                        mSpinnerPosition = c.getNum();
-                        break;
-                    }
-                }
-            }
-            return data;
+        Locale locale = CountryLoader.getLocale(mContext);
+        CountryNames names = CountryRegistry.peek() != null ? CountryNames.peek(locale, mAllowlist) : null;
+        if (names != null) {
+            // already loaded by another component, no need to wait for the loader
+            setCountryNames(names);
         }
+        mLoader = CountryLoader.load(mContext, locale, mAllowlist, mOnCountriesLoaded);
+    }
 
-        @Override
-        protected void onPostExecute(ArrayList<Country> data) {
-
-            Timber.d("onPostExecute size of data was " +String.valueOf(data.size()));
-
-            mAdapter.addAll(data);
-            mAdapter.notifyDataSetChanged();
-
+    private void setCountryNames(CountryNames names) {
+        if (mAdapter.getCountryNames() != names) {
+            // a shared adapter may show them already
+            mAdapter.setCountryNames(names);
+        }
+        if (mSpinner.getAdapter() != mAdapter) {
             mSpinner.setAdapter(mAdapter);
-
-            Timber.d("onPostExecute mspinnerposition was " +String.valueOf(mSpinnerPosition));
-
-            if (mSpinnerPosition > 0) {
-                mSpinner.setSelection(mSpinnerPosition);
-            }
-
         }
     }
 
@@ -388,10 +542,10 @@ public class PhoneCountryFlagsComponent extends LinearLayout {
      */
     @SuppressWarnings("unused") public String updateNationalNumber(String numberToFormat){
 
-        Timber.d("updateNationalNumber with " + numberToFormat);
+        Tracer.d("updateNationalNumber with %s", numberToFormat);
 
         /*//Instantiate the as you type formatter with the current region (US or UK)
-        AsYouTypeFormatter aytf = mPhoneNumberUtil.getAsYouTypeFormatter(PhoneUtils.getCountryRegionFromPhone(mContext));
+        AsYouTypeFormatter aytf = getPhoneNumberUtil().getAsYouTypeFormatter(RegionProvider.getInstance(mContext).getCachedRegion());
 
         //RE input all of the digits into the formatter
         for(int i = 0; i < numberToFormat.length(); i++){
@@ -404,11 +558,11 @@ public class PhoneCountryFlagsComponent extends LinearLayout {
         Phonenumber.PhoneNumber fNationalNumber = new Phonenumber.PhoneNumber();
 
         fNationalNumber.setCountryCodeSource(Phonenumber.PhoneNumber.CountryCodeSource.FROM_NUMBER_WITH_PLUS_SIGN);
-        fNationalNumber.setCountryCode(mPhoneNumberUtil.getCountryCodeForRegion(PhoneUtils.getCountryRegionFromPhone(mContext)));
+        fNationalNumber.setCountryCode(getPhoneNumberUtil().getCountryCodeForRegion(RegionProvider.getInstance(mContext).getCachedRegion()));
 
-        String numberToReturn = mPhoneNumberUtil.format(fNationalNumber, PhoneNumberUtil.PhoneNumberFormat.E164);
+        String numberToReturn = getPhoneNumberUtil().format(fNationalNumber, PhoneNumberUtil.PhoneNumberFormat.E164);
 
-        Timber.d("Returning formatted number " + numberToReturn);
+        Tracer.d("Returning formatted number %s", numberToReturn);
 
         //Return the formatted phone number
         return numberToReturn;
@@ -419,22 +573,11 @@ public class PhoneCountryFlagsComponent extends LinearLayout {
         return mPhoneEdit;
     }
 
-    private void modifyEditText(String newText) {
-        mPhoneEdit.removeTextChangedListener(mCustomPhoneNumberFormattingTextWatcher);
-        mPhoneEdit.setFilters(new InputFilter[]{});
-        mPhoneEdit.getText().clear();
-        mPhoneEdit.getText().append(newText);
-        mPhoneEdit.setSelection(mPhoneEdit.getText().length());
-        mPhoneEdit.setFilters(new InputFilter[]{mInputFilter});
-        mPhoneEdit.addTextChangedListener(mCustomPhoneNumberFormattingTextWatcher);
-    }
-
     public boolean validateNumber() {
 
         try {
-            if (!TextUtils.isEmpty(mPhoneEdit.getText().toString())) {
-                mPhoneNumberUtil.parse(mPhoneEdit.getText().toString(), PhoneUtils.getCountryRegionFromPhone(mContext));
-            }
+            PhoneNumbers.validate(mPhoneEdit.getText().toString(), RegionProvider.getInstance(mContext).getCachedRegion(),
+                    mAllowlist);
             //Rejects if the number isn't in an acceptable format for the region code given etc.
         } catch (NumberParseException e) {
             Toast.makeText(mContext, e.getMessage(), Toast.LENGTH_SHORT).show();